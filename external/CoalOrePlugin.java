@@ -1,6 +1,7 @@
 package com.jordansbored.coalore;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -42,6 +43,7 @@ import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
  * - Automatically generates coal ore veins when new chunks are created
  * - Ore spawns between Y=10 and Y=80, with higher density at lower levels
  * - Replaces stone-like blocks only
+ * - Skipped when the Bronze Age plugin is installed, which generates coal in its shared ore engine
  * 
  * Commands (Creative mode):
  * - /coalore spawn [size] - Spawns a coal ore vein at your location
@@ -55,6 +57,9 @@ public class CoalOrePlugin extends JavaPlugin {
     // Coal ore block ID - defined in our pack as Ore_Coal_Stone
     private static final String COAL_ORE_BLOCK = "Ore_Coal_Stone";
     private static final String STONE_BLOCK = "Rock_Stone";
+
+    // Set by the Bronze Age plugin to the ore blocks its shared engine generates
+    private static final String SHARED_ENGINE_PROPERTY = "bronzeage.oreEngine.blocks";
     
     // Generation settings
     private static final int MIN_Y = 10;
@@ -112,6 +117,11 @@ public class CoalOrePlugin extends JavaPlugin {
             return;
         }
         
+        // The Bronze Age ore engine already generates coal in the same pass as tin
+        if (isGeneratedBySharedEngine()) {
+            return;
+        }
+        
         // Initialize block IDs on first use
         if (!initializeBlockIds()) {
             return;
@@ -203,6 +213,14 @@ public class CoalOrePlugin extends JavaPlugin {
         });
     }
     
+    /**
+     * @return true if the Bronze Age plugin's shared ore engine generates coal ore
+     */
+    private static boolean isGeneratedBySharedEngine() {
+        String blocks = System.getProperty(SHARED_ENGINE_PROPERTY);
+        return blocks != null && Arrays.asList(blocks.split(",")).contains(COAL_ORE_BLOCK);
+    }
+    
     /**
      * Initialize and cache block IDs for better performance.
      * @return true if initialization succeeded
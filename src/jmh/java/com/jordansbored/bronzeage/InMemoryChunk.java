@@ -0,0 +1,115 @@
+package com.jordansbored.bronzeage;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 32x320x32 chunk held in a flat int array, standing in for a live
+ * {@code WorldChunk} in benchmarks. Block coordinates are taken modulo the
+ * chunk size, so a plan for any chunk can be applied to it.
+ *
+ * {@link #fillTerrain} lays down bedrock-to-sky layering similar to generated
+ * terrain: stone with granite and basalt pockets, a dirt and gravel band under
+ * a grass surface around Y=80, cave pockets of air and air above the surface.
+ */
+final class InMemoryChunk implements ChunkBlockAccess {
+
+    static final int SIZE = 32;
+    static final int HEIGHT = 320;
+
+    // Fake block asset indices used by the benchmarks
+    static final int AIR = 0;
+    static final int STONE = 1;
+    static final int GRANITE = 2;
+    static final int BASALT = 3;
+    static final int DIRT = 4;
+    static final int DIRT_GRASS = 5;
+    static final int GRAVEL = 6;
+    static final int CLAY = 7;
+    static final int ORE = 8;
+    static final int COAL_ORE = 9;
+    static final int BLOCK_COUNT = 10;
+
+    /** Names of the fake blocks, for compiling {@link HostRocks} against this chunk. */
+    static final Map<String, Integer> BLOCK_IDS = Map.of(
+        "Rock_Stone", STONE,
+        "Rock_Granite", GRANITE,
+        "Rock_Basalt", BASALT,
+        "Dirt", DIRT,
+        "Dirt_Grass", DIRT_GRASS,
+        "Gravel", GRAVEL,
+        "Clay", CLAY,
+        "Ore_Tin_Stone", ORE,
+        "Ore_Coal_Stone", COAL_ORE
+    );
+
+    private final int[] blocks = new int[SIZE * HEIGHT * SIZE];
+
+    static int indexOf(String blockName) {
+        return BLOCK_IDS.getOrDefault(blockName, -1);
+    }
+
+    /**
+     * Fills the chunk with deterministic layered terrain.
+     */
+    InMemoryChunk fillTerrain(long seed) {
+        SplittableRandom rand = new SplittableRandom(seed);
+        for (int x = 0; x < SIZE; x++) {
+            for (int z = 0; z < SIZE; z++) {
+                int surface = 76 + rand.nextInt(8);
+                for (int y = 0; y < HEIGHT; y++) {
+                    int block;
+                    if (y > surface) {
+                        block = AIR;
+                    } else if (y == surface) {
+                        block = DIRT_GRASS;
+                    } else if (y > surface - 4) {
+                        block = rand.nextInt(8) == 0 ? GRAVEL : DIRT;
+                    } else {
+                        int roll = rand.nextInt(100);
+                        block = roll < 6 ? GRANITE : roll < 9 ? BASALT : roll < 10 ? CLAY : STONE;
+                    }
+                    blocks[index(x, y, z)] = block;
+                }
+            }
+        }
+        // Carve a few spherical caves through the stone
+        for (int c = 0; c < 6; c++) {
+            int cx = rand.nextInt(SIZE);
+            int cy = 12 + rand.nextInt(60);
+            int cz = rand.nextInt(SIZE);
+            int r = 3 + rand.nextInt(4);
+            for (int x = Math.max(0, cx - r); x <= Math.min(SIZE - 1, cx + r); x++) {
+                for (int y = Math.max(1, cy - r); y <= cy + r; y++) {
+                    for (int z = Math.max(0, cz - r); z <= Math.min(SIZE - 1, cz + r); z++) {
+                        int dx = x - cx;
+                        int dy = y - cy;
+                        int dz = z - cz;
+                        if (dx*dx + dy*dy + dz*dz <= r*r) {
+                            blocks[index(x, y, z)] = AIR;
+                        }
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    void copyFrom(InMemoryChunk other) {
+        System.arraycopy(other.blocks, 0, blocks, 0, blocks.length);
+    }
+
+    @Override
+    public int getBlock(int x, int y, int z) {
+        return blocks[index(x & 31, y, z & 31)];
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, int blockId) {
+        blocks[index(x & 31, y, z & 31)] = blockId;
+    }
+
+    private static int index(int localX, int y, int localZ) {
+        return (y * SIZE + localZ) * SIZE + localX;
+    }
+}
@@ -0,0 +1,135 @@
+package com.jordansbored.bronzeage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the ore generation engine, run without a server against an
+ * {@link InMemoryChunk}.
+ *
+ * Run with {@code ./gradlew jmh}; the build enables the GC profiler so every
+ * result also reports the allocation rate ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OreGenerationBenchmark {
+
+    private static final long WORLD_SEED = 0x5EEDL;
+    // Chunks cycled through so plans differ between invocations
+    private static final int CHUNK_SPAN = 64;
+
+    private final VeinRasterizer rasterizer = new VeinRasterizer();
+    private final OreRandom rand = new OreRandom(0L);
+    private final OrePlanner planner = new OrePlanner();
+    private final PlacementBatch batch = new PlacementBatch();
+
+    private InMemoryChunk pristine;
+    private InMemoryChunk chunk;
+    private OreTables tables;
+    private boolean[][] hostRocks;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        pristine = new InMemoryChunk().fillTerrain(42L);
+        chunk = new InMemoryChunk();
+        tables = OreTables.compile(OreDefinition.ALL, InMemoryChunk::indexOf, InMemoryChunk.BLOCK_COUNT);
+        hostRocks = tables.hostRocks(null);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetChunk() {
+        // Undo ore placed by the previous iteration so every iteration sees the same host rock
+        chunk.copyFrom(pristine);
+    }
+
+    /** One vein rasterized and clipped to the chunk. */
+    @Benchmark
+    public int rasterizeVein() {
+        int i = counter++;
+        rand.reset(OreRandom.veinSeed(WORLD_SEED, i));
+        rasterizer.rasterize(16, 40, 16, OreDefinition.TIN.minVeinSize + (i & 3), rand);
+        return rasterizer.clip(0, 31, VeinRasterizer.MIN_BLOCK_Y, VeinRasterizer.MAX_BLOCK_Y, 0, 31);
+    }
+
+    /** Command-path grouping: ten veins spread over a 128-block radius, packed and sorted by chunk. */
+    @Benchmark
+    public int groupPlacementsByChunk() {
+        int i = counter++;
+        rand.reset(OreRandom.veinSeed(WORLD_SEED, i));
+        batch.clear();
+        for (int v = 0; v < 10; v++) {
+            int cx = rand.nextInt(256) - 128;
+            int cz = rand.nextInt(256) - 128;
+            rasterizer.rasterize(cx, 40, cz, OreDefinition.TIN.maxVeinSize, rand);
+            rasterizer.clipY();
+            for (int w = 0; w < VeinRasterizer.words(); w++) {
+                long bits = rasterizer.word(w);
+                while (bits != 0L) {
+                    int bit = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    batch.add(rasterizer.blockX(w), rasterizer.blockY(bit), rasterizer.blockZ(bit));
+                }
+            }
+        }
+        batch.sortByChunk();
+        int groups = 0;
+        for (int start = 0; start < batch.size(); start = batch.chunkGroupEnd(start)) {
+            groups++;
+        }
+        return groups;
+    }
+
+    /** Host rock lookup over a full column of the chunk. */
+    @Benchmark
+    public int hostRockLookup() {
+        int x = counter++ & 31;
+        int hits = 0;
+        for (int y = 0; y < InMemoryChunk.HEIGHT; y++) {
+            for (int z = 0; z < InMemoryChunk.SIZE; z++) {
+                if (HostRockTable.isReplaceable(hostRocks[0], chunk.getBlock(x, y, z))) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    /** Worker-side planning of one chunk, all ores. */
+    @Benchmark
+    public void planChunk(Blackhole bh) {
+        int i = counter++;
+        bh.consume(planner.planChunk(WORLD_SEED, i % CHUNK_SPAN, i / CHUNK_SPAN % CHUNK_SPAN, tables));
+    }
+
+    /** Full per-chunk generation of all ores: plan plus world-thread apply. */
+    @Benchmark
+    public int generateChunk() {
+        int i = counter++;
+        ChunkOrePlan plan = planner.planChunk(WORLD_SEED, i % CHUNK_SPAN, i / CHUNK_SPAN % CHUNK_SPAN, tables);
+        if (plan == null) {
+            return 0;
+        }
+        int placed = 0;
+        for (int v = 0; v < plan.veinCount(); v++) {
+            placed += plan.applyVein(v, chunk, hostRocks);
+        }
+        return placed;
+    }
+}
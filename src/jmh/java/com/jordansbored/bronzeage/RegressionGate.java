@@ -0,0 +1,340 @@
+package com.jordansbored.bronzeage;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Deterministic regression gate for the ore generation engine, run by the
+ * {@code regressionCheck} Gradle task as part of {@code check}.
+ *
+ * Generates a fixed set of seeds and chunk coordinates the way a newly
+ * generated chunk is handled on the server (host rock summary, plan, apply)
+ * against an {@link InMemoryChunk}, then:
+ * <ul>
+ *   <li>compares the blocks every chunk gets with {@code snapshot.txt}:
+ *       blocks placed, blocks spilled into neighbours and a hash of every
+ *       write and spill, so any change to the output fails (and skipping
+ *       work, e.g. with {@code -Dbronzeage.occupancy}, must not change it);</li>
+ *   <li>measures the bytes each chunk allocates with the per-thread
+ *       allocation counter and the nanosecond latency of each chunk, and
+ *       fails if the mean or max allocation go over {@code budget.properties}.</li>
+ * </ul>
+ * Latency is reported but only checked against its budget with
+ * {@code -Dbronzeage.latencyBudget=true} (Gradle: {@code -PlatencyBudget=true}):
+ * wall-clock time depends on the machine and its load, so it would make
+ * {@code check} flaky, while the snapshot and allocation are deterministic.
+ * After an intended change, {@code ./gradlew updateRegressionBaseline}
+ * records both files again.
+ */
+final class RegressionGate {
+
+    private static final long[] SEEDS = {0x5EEDL, 1L, 42L, -4962768465676381896L};
+    private static final int CHUNK_MIN = -4;
+    private static final int CHUNK_MAX = 3;
+    // Distinct terrains, assigned to cases round robin
+    private static final int TERRAINS = 4;
+    private static final int WARMUP_ROUNDS = 40;
+    private static final int MEASURED_ROUNDS = 20;
+    // Headroom recorded on top of the measurement: allocation is deterministic, latency is not
+    private static final double ALLOC_HEADROOM = 1.10;
+    private static final double LATENCY_HEADROOM = 3.0;
+    // FNV-1a over the bytes of every write
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final OreTables tables = OreTables.compile(OreDefinition.ALL, InMemoryChunk::indexOf, InMemoryChunk.BLOCK_COUNT);
+    private final boolean[][] hostRocks = tables.hostRocks(null);
+    private final OrePlanner planner = new OrePlanner();
+    private final InMemoryChunk[] terrains = new InMemoryChunk[TERRAINS];
+    private final InMemoryChunk chunk = new InMemoryChunk();
+
+    private RegressionGate() {
+        for (int i = 0; i < TERRAINS; i++) {
+            terrains[i] = new InMemoryChunk().fillTerrain(42L + i);
+        }
+    }
+
+    /**
+     * @param args directory holding {@code snapshot.txt} and {@code budget.properties},
+     *             and {@code --update} to record them instead of checking
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2 || (args.length == 2 && !args[1].equals("--update"))) {
+            throw new IllegalArgumentException("usage: RegressionGate <regression dir> [--update]");
+        }
+        Path dir = Paths.get(args[0]);
+        boolean update = args.length == 2;
+        RegressionGate gate = new RegressionGate();
+
+        Map<String, String> output = gate.snapshot();
+        Measurement measured = gate.measure();
+        System.out.println(measured.describe());
+
+        if (update) {
+            writeSnapshot(dir.resolve("snapshot.txt"), output);
+            writeBudget(dir.resolve("budget.properties"), measured);
+            System.out.println("Recorded " + output.size() + " chunks and budgets in " + dir);
+            return;
+        }
+
+        List<String> failures = new ArrayList<>();
+        compareSnapshot(readSnapshot(dir.resolve("snapshot.txt")), output, failures);
+        Properties budget = new Properties();
+        try (Reader in = Files.newBufferedReader(dir.resolve("budget.properties"), StandardCharsets.UTF_8)) {
+            budget.load(in);
+        }
+        checkBudget(budget, "alloc.meanBytesPerChunk", measured.meanAllocBytes, failures);
+        checkBudget(budget, "alloc.maxBytesPerChunk", measured.maxAllocBytes, failures);
+        boolean latencyBudget = Boolean.getBoolean("bronzeage.latencyBudget");
+        if (latencyBudget) {
+            checkBudget(budget, "latency.p50Nanos", measured.p50Nanos, failures);
+            checkBudget(budget, "latency.p99Nanos", measured.p99Nanos, failures);
+        }
+
+        if (!failures.isEmpty()) {
+            System.err.println("Regression gate failed:");
+            for (String failure : failures) {
+                System.err.println("  " + failure);
+            }
+            System.err.println("If the change is intended, run ./gradlew updateRegressionBaseline and commit " + dir);
+            System.exit(1);
+        }
+        System.out.println("Regression gate passed: " + output.size() + " chunks match the snapshot, within the "
+            + (latencyBudget ? "allocation and latency budgets" : "allocation budget (latency not checked)"));
+    }
+
+    /**
+     * Generates every case once through a hashing chunk.
+     * @return "seed chunkX chunkZ" -> "placed spilled hash"
+     */
+    private Map<String, String> snapshot() {
+        Map<String, String> output = new LinkedHashMap<>();
+        HashingChunk hashing = new HashingChunk(chunk);
+        int i = 0;
+        for (long seed : SEEDS) {
+            for (int chunkX = CHUNK_MIN; chunkX <= CHUNK_MAX; chunkX++) {
+                for (int chunkZ = CHUNK_MIN; chunkZ <= CHUNK_MAX; chunkZ++) {
+                    chunk.copyFrom(terrains[i++ % TERRAINS]);
+                    hashing.hash = FNV_OFFSET;
+                    ChunkOrePlan plan = generate(seed, chunkX, chunkZ, hashing);
+                    int spills = plan == null ? 0 : plan.spills.length;
+                    if (plan != null) {
+                        for (int spill : plan.spills) {
+                            hashing.mix(spill);
+                        }
+                    }
+                    output.put(seed + " " + chunkX + " " + chunkZ,
+                        hashing.placed + " " + spills + " " + Long.toHexString(hashing.hash));
+                    hashing.placed = 0;
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Generates every case repeatedly, timing each chunk and counting what it allocates.
+     */
+    private Measurement measure() {
+        int cases = SEEDS.length * (CHUNK_MAX - CHUNK_MIN + 1) * (CHUNK_MAX - CHUNK_MIN + 1);
+        long[] nanos = new long[cases * MEASURED_ROUNDS];
+        long[] bytes = new long[cases * MEASURED_ROUNDS];
+        int sample = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            boolean measured = round >= WARMUP_ROUNDS;
+            int i = 0;
+            for (long seed : SEEDS) {
+                for (int chunkX = CHUNK_MIN; chunkX <= CHUNK_MAX; chunkX++) {
+                    for (int chunkZ = CHUNK_MIN; chunkZ <= CHUNK_MAX; chunkZ++) {
+                        chunk.copyFrom(terrains[i++ % TERRAINS]);
+                        long allocStart = Allocations.currentThreadBytes();
+                        long start = System.nanoTime();
+                        generate(seed, chunkX, chunkZ, chunk);
+                        long elapsed = System.nanoTime() - start;
+                        long allocated = Allocations.currentThreadBytes() - allocStart;
+                        if (measured) {
+                            nanos[sample] = elapsed;
+                            bytes[sample] = allocated;
+                            sample++;
+                        }
+                    }
+                }
+            }
+        }
+        return new Measurement(cases, nanos, bytes, Allocations.currentThreadBytes() >= 0);
+    }
+
+    /**
+     * The per-chunk work of a newly generated chunk on the server.
+     */
+    private ChunkOrePlan generate(long seed, int chunkX, int chunkZ, ChunkBlockAccess target) {
+        SectionOccupancy occupancy = SectionOccupancy.ENABLED
+            ? SectionOccupancy.summarize(target, chunkX, chunkZ, seed, tables, hostRocks, planner) : null;
+        ChunkOrePlan plan = planner.planChunk(seed, chunkX, chunkZ, tables, occupancy);
+        if (plan != null) {
+            for (int v = 0; v < plan.veinCount(); v++) {
+                plan.applyVein(v, target, hostRocks);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Forwards to a chunk and hashes every write, in order.
+     */
+    private static final class HashingChunk implements ChunkBlockAccess {
+        private final ChunkBlockAccess chunk;
+        long hash = FNV_OFFSET;
+        int placed;
+
+        HashingChunk(ChunkBlockAccess chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int getBlock(int x, int y, int z) {
+            return chunk.getBlock(x, y, z);
+        }
+
+        @Override
+        public void setBlock(int x, int y, int z, int blockId) {
+            mix(ChunkOrePlan.pack(x & 31, y, z & 31));
+            mix(blockId);
+            placed++;
+            chunk.setBlock(x, y, z, blockId);
+        }
+
+        void mix(int value) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                hash = (hash ^ ((value >>> shift) & 0xFF)) * FNV_PRIME;
+            }
+        }
+    }
+
+    private static final class Measurement {
+        final int chunks;
+        final long meanAllocBytes;
+        final long maxAllocBytes;
+        final long p50Nanos;
+        final long p99Nanos;
+        final long maxNanos;
+        final boolean allocTracked;
+
+        Measurement(int chunks, long[] nanos, long[] bytes, boolean allocTracked) {
+            this.chunks = chunks;
+            this.allocTracked = allocTracked;
+            long total = 0;
+            long max = 0;
+            for (long b : bytes) {
+                total += b;
+                max = Math.max(max, b);
+            }
+            this.meanAllocBytes = total / bytes.length;
+            this.maxAllocBytes = max;
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            this.p50Nanos = percentile(sorted, 0.50);
+            this.p99Nanos = percentile(sorted, 0.99);
+            this.maxNanos = sorted[sorted.length - 1];
+        }
+
+        private static long percentile(long[] sorted, double fraction) {
+            int rank = (int) Math.ceil(fraction * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+
+        String describe() {
+            return String.format(Locale.ROOT,
+                "%d chunks x %d rounds: alloc mean %d B, max %d B per chunk%s; latency p50 %d ns, p99 %d ns, max %d ns",
+                chunks, MEASURED_ROUNDS, meanAllocBytes, maxAllocBytes, allocTracked ? "" : " (not tracked by this JVM)",
+                p50Nanos, p99Nanos, maxNanos);
+        }
+    }
+
+    private static void checkBudget(Properties budget, String key, long measured, List<String> failures) {
+        String value = budget.getProperty(key);
+        if (value == null) {
+            failures.add("budget.properties has no " + key);
+            return;
+        }
+        long limit = Long.parseLong(value.trim());
+        if (measured > limit) {
+            failures.add(String.format(Locale.ROOT, "%s: %d is over the budget of %d (+%.0f%%)",
+                key, measured, limit, (measured - limit) * 100.0 / limit));
+        }
+    }
+
+    private static void compareSnapshot(Map<String, String> expected, Map<String, String> actual, List<String> failures) {
+        int mismatches = 0;
+        for (Map.Entry<String, String> e : actual.entrySet()) {
+            String want = expected.get(e.getKey());
+            if (!e.getValue().equals(want)) {
+                if (mismatches++ < 10) {
+                    failures.add("chunk " + e.getKey() + ": got " + e.getValue() + ", snapshot has " + (want == null ? "nothing" : want));
+                }
+            }
+        }
+        for (String key : expected.keySet()) {
+            if (!actual.containsKey(key) && mismatches++ < 10) {
+                failures.add("chunk " + key + " is in the snapshot but was not generated");
+            }
+        }
+        if (mismatches > 10) {
+            failures.add((mismatches - 10) + " more chunks differ from the snapshot");
+        }
+    }
+
+    private static Map<String, String> readSnapshot(Path file) throws IOException {
+        Map<String, String> snapshot = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.trim().split("\\s+");
+            snapshot.put(fields[0] + " " + fields[1] + " " + fields[2], String.join(" ", Arrays.copyOfRange(fields, 3, fields.length)));
+        }
+        return snapshot;
+    }
+
+    private static void writeSnapshot(Path file, Map<String, String> output) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("# Ore generation output per chunk, checked by RegressionGate\n");
+            out.write("# seed chunkX chunkZ placed spilled hash\n");
+            for (Map.Entry<String, String> e : output.entrySet()) {
+                out.write(e.getKey() + " " + e.getValue() + "\n");
+            }
+        }
+    }
+
+    private static void writeBudget(Path file, Measurement measured) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("# Per-chunk budgets checked by RegressionGate, recorded with ./gradlew updateRegressionBaseline\n");
+            out.write("# from: " + measured.describe() + "\n");
+            out.write(String.format(Locale.ROOT, "# Allocation has %.0f%% headroom, latency %.0fx\n",
+                (ALLOC_HEADROOM - 1) * 100, LATENCY_HEADROOM));
+            out.write("alloc.meanBytesPerChunk=" + (long) Math.ceil(measured.meanAllocBytes * ALLOC_HEADROOM) + "\n");
+            out.write("alloc.maxBytesPerChunk=" + (long) Math.ceil(measured.maxAllocBytes * ALLOC_HEADROOM) + "\n");
+            out.write("latency.p50Nanos=" + roundUp(measured.p50Nanos * LATENCY_HEADROOM) + "\n");
+            out.write("latency.p99Nanos=" + roundUp(measured.p99Nanos * LATENCY_HEADROOM) + "\n");
+        }
+    }
+
+    // Up to the next microsecond, so recorded budgets do not look more precise than they are
+    private static long roundUp(double nanos) {
+        return (long) Math.ceil(nanos / 1000.0) * 1000L;
+    }
+}
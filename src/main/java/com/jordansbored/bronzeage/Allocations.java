@@ -0,0 +1,35 @@
+package com.jordansbored.bronzeage;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Per-thread allocation counter used by the generation timing logs.
+ */
+final class Allocations {
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private Allocations() {
+    }
+
+    /**
+     * @return bytes allocated so far by the calling thread, or -1 if the JVM does not track it
+     */
+    static long currentThreadBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1L;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        if (!bean.isThreadAllocatedMemoryEnabled()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,71 @@
+package com.jordansbored.bronzeage;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+
+import com.hypixel.hytale.server.core.asset.type.environment.config.Environment;
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+
+/**
+ * Maps a chunk to one of the HytaleGenerator biome keys used by
+ * {@link HostRocks} (Desert1, Plains1, Taiga1).
+ *
+ * The biome is read from the environment of the chunk's center column, at
+ * the height the ores are generated at ({@link OreTables#biomeSampleY}), and
+ * matched by family name, so {@code Desert1} matches any environment whose id
+ * contains "desert". Matches are cached per environment index.
+ */
+final class BiomeResolver {
+
+    private static final String UNKNOWN = "";
+
+    private final String[] biomes;
+    private final String[] families;
+    // environment index -> biome key, UNKNOWN for no match, null if not resolved yet
+    private volatile String[] cache = new String[0];
+
+    BiomeResolver(Collection<String> biomes) {
+        this.biomes = biomes.toArray(new String[0]);
+        this.families = new String[this.biomes.length];
+        for (int i = 0; i < this.biomes.length; i++) {
+            // Desert1 -> desert
+            families[i] = this.biomes[i].replaceAll("\\d+$", "").toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * @param tables the tables the chunk's ore is planned with, which give the sample height
+     * @return the biome key for the chunk, or null if it matches none
+     */
+    String biomeOf(WorldChunk chunk, OreTables tables) {
+        int environment = chunk.getBlockChunk().getEnvironment(16, tables.biomeSampleY, 16);
+        if (environment < 0) {
+            return null;
+        }
+
+        String[] resolved = cache;
+        String biome = environment < resolved.length ? resolved[environment] : null;
+        if (biome == null) {
+            biome = match(environment);
+            resolved = Arrays.copyOf(resolved, Math.max(resolved.length, environment + 1));
+            resolved[environment] = biome;
+            cache = resolved;
+        }
+        return biome == UNKNOWN ? null : biome;
+    }
+
+    private String match(int environment) {
+        Environment asset = Environment.getAssetMap().getAsset(environment);
+        if (asset == null) {
+            return UNKNOWN;
+        }
+        String id = asset.getId().toLowerCase(Locale.ROOT);
+        for (int i = 0; i < biomes.length; i++) {
+            if (id.contains(families[i])) {
+                return biomes[i];
+            }
+        }
+        return UNKNOWN;
+    }
+}
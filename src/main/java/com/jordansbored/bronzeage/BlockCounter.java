@@ -0,0 +1,49 @@
+package com.jordansbored.bronzeage;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+/**
+ * Counts ore and host rock blocks in runs of block ids copied out of chunks,
+ * for {@code /bronzeage survey}.
+ *
+ * {@link #create()} picks {@code VectorBlockCounter} when the JDK Vector API
+ * is available (the server runs with {@code --add-modules jdk.incubator.vector})
+ * and {@link ScalarBlockCounter} otherwise; both give the same counts. The
+ * vector counter is built from {@code src/vector}, the only code compiled
+ * against the incubator module, so it is loaded by name.
+ * Implementations are stateless and thread-safe.
+ */
+interface BlockCounter {
+
+    /**
+     * Adds the ore blocks of every ore to {@code counts[2 * ore]} and its host
+     * rock blocks to {@code counts[2 * ore + 1]}.
+     * @param ids block ids; the range {@code [from, to)} is counted
+     * @param oreBlockIds block id of every ore, -1 for ores that are not counted
+     * @param hostRocks per ore, 1 for host rock ids and 0 otherwise; ids outside
+     *                  the table are not host rock
+     */
+    void count(int[] ids, int from, int to, int[] oreBlockIds, int[][] hostRocks, long[] counts);
+
+    /**
+     * @return a short description for reports, e.g. "vector, 8 lanes"
+     */
+    String describe();
+
+    /**
+     * @return the vector counter if the Vector API is available, the scalar one otherwise
+     */
+    static BlockCounter create() {
+        // Set -Dbronzeage.vectorSurvey=false to force the scalar counter
+        if (Boolean.parseBoolean(System.getProperty("bronzeage.vectorSurvey", "true"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (BlockCounter) Class.forName("com.jordansbored.bronzeage.VectorBlockCounter")
+                    .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                HytaleLogger.forEnclosingClass().atWarning().log("Vector API unavailable, surveying with scalar code: %s", e);
+            }
+        }
+        return new ScalarBlockCounter();
+    }
+}
@@ -1,15 +1,27 @@
 package com.jordansbored.bronzeage;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
 
+import com.hypixel.hytale.assetstore.event.LoadedAssetsEvent;
 import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.component.Store;
 import com.hypixel.hytale.event.EventPriority;
@@ -21,6 +33,7 @@ import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.asset.type.blocktype.config.BlockType;
 import com.hypixel.hytale.server.core.command.system.CommandContext;
 import com.hypixel.hytale.server.core.command.system.arguments.system.DefaultArg;
+import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredArg;
 import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
 import com.hypixel.hytale.server.core.command.system.basecommands.AbstractCommandCollection;
 import com.hypixel.hytale.server.core.command.system.basecommands.AbstractPlayerCommand;
@@ -31,48 +44,69 @@ import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
 import com.hypixel.hytale.server.core.universe.world.events.ChunkPreLoadProcessEvent;
+import com.hypixel.hytale.server.core.universe.world.events.RemoveWorldEvent;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 
 /**
  * Bronze Age Plugin - Adds tin ore, bronze alloy crafting, and bronze-tier tools
  * 
  * Features:
- * - Tin ore natural generation (Y=10-50, rarer than coal)
+ * - Tin ore natural generation (Y=10-70, skewed deep)
+ * - Shared ore engine: also generates coal when Ore_Coal_Stone is installed,
+ *   in the same pass as tin (see {@link OreDefinition})
  * - Alloy Furnace for smelting bronze (160x fuel consumption)
  * - Bronze tools (between stone and iron tier)
  * 
- * Tin Ore Generation:
- * - Spawns between Y=10 and Y=50
- * - 50% chunk chance (uncommon)
- * - 2-3 veins per chunk when spawning
+ * Tin Ore Generation (defaults, tunable in config.properties, see {@link OreConfig}):
+ * - Spawns between Y=10 and Y=70, more often near the bottom
+ * - 90% chunk chance
+ * - 7-8 veins of 3-7 sub-spheres per chunk when spawning
  * 
  * Commands (Creative mode):
  * - /bronzeage spawn [size] - Spawns a tin ore vein at your location
  * - /bronzeage generate [radius] [count] - Generates multiple veins in an area
+ * - /bronzeage jobs - Lists running generation jobs
+ * - /bronzeage cancel <id> - Cancels a generation job
+ * - /bronzeage stats - Shows generation metrics for the current world
+ * - /bronzeage retrogen <radius|world|stop> - Adds ore to chunks generated before the plugin was installed
+ * - /bronzeage locate [radius] - Finds the nearest tin vein from the world seed, without loading chunks
+ * - /bronzeage reload - Reloads config.properties
  */
 public class BronzeAgePlugin extends JavaPlugin {
 
     private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
     
     // Tin ore block ID - defined in our pack as Ore_Tin_Stone
-    private static final String TIN_ORE_BLOCK = "Ore_Tin_Stone";
-    private static final String STONE_BLOCK = "Rock_Stone";
-    
-    // Tin ore generation settings (rarer than coal, deeper range)
-    private static final int MIN_Y = 10;
-    private static final int MAX_Y = 70;
-    private static final int VEINS_PER_CHUNK = 7;  //  veins when spawning
-    private static final int MIN_VEIN_SIZE = 3;
-    private static final int MAX_VEIN_SIZE = 7;
-    private static final double SPAWN_CHANCE = 0.9; // 90% chance per chunk
-
-    private final Random random = new Random();
+    private static final String TIN_ORE_BLOCK = OreDefinition.TIN.block;
+
+    // Ore blocks generated by this engine, published for standalone ore plugins (CoalOrePlugin) to step aside
+    static final String ENGINE_BLOCKS_PROPERTY = "bronzeage.oreEngine.blocks";
+
+    // Interval of the periodic metrics summary log line
+    private static final long SUMMARY_INTERVAL_MINUTES = 5L;
+
+    // Plans chunk ore off the world thread; the world thread only applies plans
+    private final ExecutorService planWorkers = Executors.newFixedThreadPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2), daemonThreads("BronzeAge-OrePlanner"));
+    private final ScheduledExecutorService tickScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("BronzeAge-Ticker"));
+    private final ThreadLocal<OrePlanner> planners = ThreadLocal.withInitial(OrePlanner::new);
+    // Queues, stores and counters per world, created on first use and dropped when the world is removed
+    private final Map<World, WorldOreContext> contexts = new ConcurrentHashMap<>();
+    // Command placements reuse one packed buffer per world thread
+    private final ThreadLocal<PlacementBatch> placementBatch = ThreadLocal.withInitial(PlacementBatch::new);
+    private final ThreadLocal<VeinRasterizer> veinRasterizer = ThreadLocal.withInitial(VeinRasterizer::new);
+    private final ThreadLocal<WorldChunkBlockAccess> blockAccess = ThreadLocal.withInitial(WorldChunkBlockAccess::new);
+    // Vector API counter when available, for /bronzeage survey
+    private final BlockCounter blockCounter = BlockCounter.create();
     
-    // Cached block IDs for performance (initialized on first use)
-    private int tinOreId = Integer.MIN_VALUE;
-    private BlockType tinOreType = null;
-    private int stoneId = Integer.MIN_VALUE;
-    private Set<Integer> replaceableBlockIds = null;
+    // Ore settings from config.properties; only read when the tables are rebuilt
+    private volatile List<OreDefinition> configuredOres = OreDefinition.ALL;
+    // Compiled settings and block IDs: the one reference the hot path reads. Built on first use,
+    // rebuilt if the asset map changes, and swapped as a whole by /bronzeage reload
+    private volatile OreTables oreTables = null;
+    // Set when block types are (re)loaded: ids may change even if the asset count does not
+    private volatile boolean blockTypesChanged = false;
+    private final BiomeResolver biomeResolver = new BiomeResolver(OreDefinition.biomes(OreDefinition.ALL));
 
     public BronzeAgePlugin(@Nonnull JavaPluginInit init) {
         super(init);
@@ -82,249 +116,450 @@ public class BronzeAgePlugin extends JavaPlugin {
     @Override
     protected void setup() {
         LOGGER.atInfo().log("Setting up Bronze Age plugin...");
+        try {
+            configuredOres = OreConfig.load(configFile(), OreDefinition.ALL);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.atWarning().log("Could not load %s, using default ore settings: %s", configFile(), e.getMessage());
+        }
+        deleteJournals();
+        // Claim the enabled ores before the first chunk is generated; the first table build refines this
+        System.setProperty(ENGINE_BLOCKS_PROPERTY, String.join(",", enabledBlocks(configuredOres)));
         
-        // Register chunk generation event for natural tin ore spawning
+        // Register chunk generation event for natural ore spawning
         // Use LATE priority so terrain is fully generated before we add ores
         this.getEventRegistry().registerGlobal(
             EventPriority.LATE, 
             ChunkPreLoadProcessEvent.class, 
             this::onChunkGenerated
         );
+        this.getEventRegistry().registerGlobal(RemoveWorldEvent.class, this::onWorldRemoved);
+        this.getEventRegistry().register(LoadedAssetsEvent.class, BlockType.class, event -> blockTypesChanged = true);
         
         // Register commands for manual ore spawning
         this.getCommandRegistry().registerCommand(new BronzeAgeCommand());
+
+        // Summarize generation metrics instead of logging every vein
+        tickScheduler.scheduleAtFixedRate(() -> {
+            for (WorldOreContext ctx : contexts.values()) {
+                String summary = ctx.metrics.periodicSummary();
+                if (summary != null) {
+                    LOGGER.atInfo().log("Ore generation in %s: %s", ctx.world.getName(), summary);
+                }
+                saveContext(ctx);
+            }
+        }, SUMMARY_INTERVAL_MINUTES, SUMMARY_INTERVAL_MINUTES, TimeUnit.MINUTES);
         
         LOGGER.atInfo().log("Bronze Age plugin setup complete!");
-        LOGGER.atInfo().log("  - Tin ore generation: ENABLED (Y=" + MIN_Y + " to Y=" + MAX_Y + ", ~" + VEINS_PER_CHUNK + " veins/chunk, " + (int)(SPAWN_CHANCE*100) + "%% chance)");
-        LOGGER.atInfo().log("  - Commands: /bronzeage spawn|generate");
+        for (OreDefinition ore : configuredOres) {
+            LOGGER.atInfo().log("  - %s", describe(ore));
+        }
+        LOGGER.atInfo().log("  - Commands: /bronzeage spawn|generate|jobs|cancel|stats|retrogen|locate|survey|undo|reload");
+    }
+
+    @Override
+    protected void shutdown() {
+        planWorkers.shutdownNow();
+        tickScheduler.shutdownNow();
+        for (WorldOreContext ctx : contexts.values()) {
+            saveContext(ctx);
+            ctx.closeJournals();
+        }
+        contexts.clear();
+        System.clearProperty(ENGINE_BLOCKS_PROPERTY);
+    }
+
+    private static String describe(OreDefinition ore) {
+        if (!ore.enabled) {
+            return ore.name + " ore generation: DISABLED in config";
+        }
+        return ore.name + " ore generation: ENABLED if " + ore.block + " exists (Y=" + ore.minY + " to Y=" + ore.maxY
+            + ", ~" + ore.veinsPerChunk + " veins/chunk of size " + ore.minVeinSize + "-" + ore.maxVeinSize
+            + ", " + (int) (ore.spawnChance * 100) + "% chance)"
+            + (ore.nativeGeneration && !ore.nativeBiomes().isEmpty()
+                ? ", left to the world generator in " + String.join(", ", ore.nativeBiomes()) : "");
+    }
+
+    /**
+     * @return blocks of the enabled ores, whether or not they are installed
+     */
+    private static List<String> enabledBlocks(List<OreDefinition> ores) {
+        List<String> blocks = new ArrayList<>();
+        for (OreDefinition ore : ores) {
+            if (ore.enabled) {
+                blocks.add(ore.block);
+            }
+        }
+        return blocks;
+    }
+
+    private Path configFile() {
+        return getDataDirectory().resolve(OreConfig.FILE_NAME);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
     
     /**
-     * Called when a chunk is about to be loaded. If it's newly generated,
-     * we add tin ore veins to it.
+     * Called when a chunk is about to be loaded. Blocks that veins of
+     * neighbouring chunks left for it are queued first. If it's newly
+     * generated, we plan the veins of every ore for it on a worker thread and
+     * queue the plan to be applied on the world thread in one pass.
      */
     private void onChunkGenerated(@Nonnull ChunkPreLoadProcessEvent event) {
-        // Only process newly generated chunks, not chunks loaded from disk
-        if (!event.isNewlyGenerated()) {
-            return;
-        }
-        
         WorldChunk chunk = event.getChunk();
         if (chunk == null) {
             return;
         }
         
         // Initialize block IDs on first use
-        if (!initializeBlockIds()) {
+        if (!initializeOreTables()) {
             return;
         }
+        OreTables tables = oreTables;
         
-        // Get chunk coordinates (block coordinates of chunk corner)
-        int chunkX = chunk.getX() << 5;  // Multiply by 32 (chunk size)
-        int chunkZ = chunk.getZ() << 5;
-        
-        // Create a seeded random for this chunk so generation is deterministic
-        long chunkSeed = ((long) chunk.getX() * 341873128712L) + ((long) chunk.getZ() * 132897987541L);
-        Random chunkRandom = new Random(chunkSeed);
+        final int chunkCoordX = chunk.getX();
+        final int chunkCoordZ = chunk.getZ();
+        final WorldOreContext ctx = contextFor(chunk.getWorld());
 
-        // Chance for this chunk to have any tin ore at all
-        if (chunkRandom.nextDouble() > SPAWN_CHANCE) {
-            return; // No tin ore in this chunk
+        // Pending blocks apply to chunks loaded from disk too: the neighbour may have been generated first
+        int[] pending = ctx.pending.take(ChunkUtil.indexChunk(chunkCoordX, chunkCoordZ));
+        if (pending != null) {
+            ctx.applyQueue.submit(ChunkOrePlan.pending(chunkCoordX, chunkCoordZ, tables, pending));
         }
 
-        // Determine number of veins using seeded RNG
-        Random seedRand = new Random(chunkSeed);
-        double roll = seedRand.nextDouble();
-        if (roll > SPAWN_CHANCE) {
+        // Only plan newly generated chunks, not chunks loaded from disk
+        if (!event.isNewlyGenerated()) {
             return;
         }
+        // New chunks get their ore here, so retrogen must skip them
+        ctx.retrogen.markDone(chunkCoordX, chunkCoordZ);
 
-        int numVeinsLocal = VEINS_PER_CHUNK + seedRand.nextInt(2);
-
-        // Capture values for deferred generation
-        final int fChunkX = chunkX;
-        final int fChunkZ = chunkZ;
-        final int fChunkCoordX = chunk.getX();
-        final int fChunkCoordZ = chunk.getZ();
-        final long fChunkSeed = chunkSeed;
-        final int fNumVeins = numVeinsLocal;
-
-        World world = chunk.getWorld();
-        world.execute(() -> {
-            Random deferredRand = new Random(fChunkSeed);
-            // advance past spawn check and vein-count
-            deferredRand.nextDouble();
-            deferredRand.nextInt(2);
-
-            int totalPlacedLocal = 0;
-            int veinsCreatedLocal = 0;
-            long chunkStart = System.nanoTime();
+        // Ores set to native generation were already placed by the world generator's own assignments
+        String biome = biomeResolver.biomeOf(chunk, tables);
+        OreTables postPass = tables.postPass(biome);
+        if (!postPass.anyAvailable()) {
+            ctx.metrics.chunksNative.increment();
+            return;
+        }
 
-            long chunkIndex = ChunkUtil.indexChunkFromBlock(fChunkX, fChunkZ);
-            WorldChunk deferredChunk = (WorldChunk) world.getNonTickingChunk(chunkIndex);
-            if (deferredChunk == null) {
-                return; // chunk not available
+        // Read the chunk here, before it is handed to the world, so the planner can drop veins with no host rock
+        SectionOccupancy occupancy = SectionOccupancy.ENABLED ? scanOccupancy(ctx, chunk, postPass, biome) : null;
+        planWorkers.execute(() -> {
+            ChunkOrePlan plan = planChunk(ctx, chunkCoordX, chunkCoordZ, postPass, occupancy);
+            if (plan == null) {
+                acceptPlan(ctx, null);
+            } else {
+                // Counted by applyPlan: the queue may still shed the plan or find the chunk unloaded
+                ctx.applyQueue.submit(plan);
             }
+        });
+    }
 
-            for (int i = 0; i < fNumVeins; i++) {
-                int x = fChunkX + deferredRand.nextInt(32);
-                int z = fChunkZ + deferredRand.nextInt(32);
+    /**
+     * Summarizes where a newly generated chunk has host rock around its veins.
+     */
+    private SectionOccupancy scanOccupancy(WorldOreContext ctx, WorldChunk chunk, OreTables tables, String biome) {
+        long start = System.nanoTime();
+        boolean[][] hostRocks = tables.hostRocks(biome);
+        SectionOccupancy occupancy = SectionOccupancy.summarize(blockAccess.get().wrap(chunk), chunk.getX(), chunk.getZ(),
+            ctx.worldSeed, tables, hostRocks, planners.get());
+        ctx.metrics.occupancyTime.record(System.nanoTime() - start);
+        ctx.metrics.occupancyReads.add(occupancy.blocksRead());
+        return occupancy;
+    }
 
-                int y = MIN_Y + (int) (Math.pow(deferredRand.nextDouble(), 1.5) * (MAX_Y - MIN_Y));
+    /**
+     * Plans a chunk. Runs on a worker thread.
+     * @param occupancy host rock summary of the chunk, or null if it is not known
+     * @return the plan, or null if the chunk gets no ore
+     */
+    private ChunkOrePlan planChunk(WorldOreContext ctx, int chunkX, int chunkZ, OreTables tables, SectionOccupancy occupancy) {
+        GenerationMetrics metrics = ctx.metrics;
+        long start = System.nanoTime();
+        OrePlanner planner = planners.get();
+        ChunkOrePlan plan = planner.planChunk(ctx.worldSeed, chunkX, chunkZ, tables, occupancy);
+        metrics.planTime.record(System.nanoTime() - start);
+        metrics.veinsSkippedNoHost.add(planner.skippedVeins());
+        return plan;
+    }
 
-                int size = MIN_VEIN_SIZE + deferredRand.nextInt(MAX_VEIN_SIZE - MIN_VEIN_SIZE + 1);
+    /**
+     * Counts a chunk's plan and stores the blocks it spills into its
+     * neighbours, once it is certain the plan will be applied: on the world
+     * thread with the chunk in hand, from {@link #applyPlan}.
+     * @param plan the plan, or null if the chunk gets no ore
+     */
+    private void acceptPlan(WorldOreContext ctx, ChunkOrePlan plan) {
+        GenerationMetrics metrics = ctx.metrics;
+        metrics.chunksProcessed.increment();
+        if (plan != null) {
+            metrics.chunksWithOre.increment();
+            metrics.veinsAttempted.add(plan.veinCount());
+            // Record spills before the plan is applied, so applying it finds them for loaded neighbours
+            storeSpills(ctx, plan);
+        }
+    }
 
-                int placed = generateVeinInChunk(deferredChunk, x, y, z, size, deferredRand);
-                if (placed > 0) {
-                    totalPlacedLocal += placed;
-                    veinsCreatedLocal++;
-                }
+    /**
+     * Moves the blocks a plan spills into neighbouring chunks to the pending store.
+     */
+    private void storeSpills(WorldOreContext ctx, ChunkOrePlan plan) {
+        PendingPlacements store = ctx.pending;
+        int[] spills = plan.spills;
+        for (int start = 0; start < spills.length; ) {
+            int end = plan.spillGroupEnd(start);
+            int[] entries = new int[end - start];
+            for (int i = start; i < end; i++) {
+                entries[i - start] = ChunkOrePlan.spillEntry(spills[i]);
             }
+            long neighbour = ChunkUtil.indexChunk(plan.chunkX + ChunkOrePlan.spillDx(spills[start]), plan.chunkZ + ChunkOrePlan.spillDz(spills[start]));
+            ctx.metrics.pendingEvicted.add(store.addAll(neighbour, entries, 0, entries.length));
+            start = end;
+        }
+        ctx.metrics.spilledBlocks.add(spills.length);
+    }
 
-            long chunkEnd = System.nanoTime();
-            long chunkMs = (chunkEnd - chunkStart) / 1_000_000L;
-
-            if (veinsCreatedLocal > 0) {
-                LOGGER.atInfo().log("Generated %d tin ore veins (%d blocks) in chunk [%d, %d] in %d ms",
-                    veinsCreatedLocal, totalPlacedLocal, fChunkCoordX, fChunkCoordZ, chunkMs);
+    /**
+     * Applies the pending blocks of every neighbour a plan spilled into that
+     * is already in memory. Runs on the world thread.
+     */
+    private void applySpillsToLoadedNeighbours(WorldOreContext ctx, ChunkOrePlan plan) {
+        World world = ctx.world;
+        PendingPlacements store = ctx.pending;
+        int[] spills = plan.spills;
+        for (int start = 0; start < spills.length; start = plan.spillGroupEnd(start)) {
+            int neighbourX = plan.chunkX + ChunkOrePlan.spillDx(spills[start]);
+            int neighbourZ = plan.chunkZ + ChunkOrePlan.spillDz(spills[start]);
+            long neighbour = ChunkUtil.indexChunk(neighbourX, neighbourZ);
+            if (world.getChunkIfInMemory(neighbour) == null) {
+                continue; // applied when the neighbour is generated or loaded
             }
-        });
+            int[] entries = store.take(neighbour);
+            if (entries != null) {
+                applyPlan(ctx, ChunkOrePlan.pending(neighbourX, neighbourZ, plan.tables, entries));
+            }
+        }
     }
-    
+
+    private WorldOreContext contextFor(World world) {
+        return contexts.computeIfAbsent(world, w -> new WorldOreContext(w, loadPending(w), loadRetrogenProgress(w), tickScheduler,
+            ctx -> new ChunkApplyQueue.Applier() {
+                @Override
+                public int apply(ChunkOrePlan plan) {
+                    return applyPlan(ctx, plan);
+                }
+
+                @Override
+                public void defer(ChunkOrePlan plan) {
+                    deferPlan(ctx, plan);
+                }
+            }));
+    }
+
     /**
-     * Initialize and cache block IDs for better performance.
-     * @return true if initialization succeeded
+     * Drops a removed world's context after stopping its jobs and saving its stores.
      */
-    private boolean initializeBlockIds() {
-        if (tinOreId != Integer.MIN_VALUE) {
-            return true; // Already initialized
+    private void onWorldRemoved(@Nonnull RemoveWorldEvent event) {
+        WorldOreContext ctx = contexts.remove(event.getWorld());
+        if (ctx != null) {
+            ctx.cancelAll();
+            saveContext(ctx);
+            ctx.closeJournals();
         }
+    }
 
-        tinOreType = BlockType.getAssetMap().getAsset(TIN_ORE_BLOCK);
-        if (tinOreType == null) {
-            LOGGER.atWarning().log("Tin ore block type '%s' not found! Natural generation disabled.", TIN_ORE_BLOCK);
-            return false;
+    private PendingPlacements loadPending(World world) {
+        try {
+            return PendingPlacements.load(pendingFile(world), OreDefinition.ALL);
+        } catch (IOException e) {
+            LOGGER.atWarning().log("Could not load pending ore placements for world %s: %s", world.getName(), e.getMessage());
+            return new PendingPlacements();
         }
+    }
 
-        tinOreId = BlockType.getAssetMap().getIndex(TIN_ORE_BLOCK);
-        stoneId = BlockType.getAssetMap().getIndex(STONE_BLOCK);
-
-        // Cache all replaceable block IDs
-        String[] replaceableBlockNames = {
-            "Rock_Stone", "Rock_Stone_Cobble", "Rock_Stone_Mossy",
-            "Rock_Sandstone", "Rock_Sandstone_Cobble",
-            "Rock_Basalt", "Rock_Basalt_Cobble",
-            "Rock_Marble", "Rock_Marble_Cobble",
-            "Rock_Granite", "Rock_Granite_Cobble",
-            "Dirt", "Dirt_Grass", "Dirt_Dry",
-            "Gravel", "Clay"
-        };
+    private Path pendingFile(World world) {
+        return getDataDirectory().resolve("pending").resolve(world.getName() + ".bin");
+    }
 
-        replaceableBlockIds = new HashSet<>(replaceableBlockNames.length * 2);
-        for (int i = 0; i < replaceableBlockNames.length; i++) {
-            int id = BlockType.getAssetMap().getIndex(replaceableBlockNames[i]);
-            replaceableBlockIds.add(id);
+    private RetrogenProgress loadRetrogenProgress(World world) {
+        try {
+            return RetrogenProgress.load(retrogenFile(world));
+        } catch (IOException e) {
+            LOGGER.atWarning().log("Could not load retrogen progress for world %s: %s", world.getName(), e.getMessage());
+            return new RetrogenProgress();
         }
+    }
 
-        LOGGER.atInfo().log("Initialized tin ore generation - ore ID: %d, stone ID: %d", tinOreId, stoneId);
-        return true;
+    private Path retrogenFile(World world) {
+        return getDataDirectory().resolve("retrogen").resolve(world.getName() + ".bin");
     }
-    
+
+    private Path journalDir(World world) {
+        return getDataDirectory().resolve("journal").resolve(world.getName());
+    }
+
     /**
-     * Generate a tin ore vein within a chunk during world generation.
+     * Deletes journals left by an earlier run: job ids start over on every
+     * start, so they cannot be undone any more.
      */
-    private int generateVeinInChunk(WorldChunk chunk, int centerX, int centerY, int centerZ, int size, Random rand) {
-        int placed = 0;
-        long start = System.nanoTime();
-        int candidateChecks = 0;
-
-        // Generate a blob-like vein using multiple overlapping spheres
-        for (int i = 0; i < size; i++) {
-            float progress = (float) i / size;
-            // Replace expensive trig calls with simple randomized offsets.
-            int offsetX = (int) ((rand.nextDouble() * 2.0 - 1.0) * progress * 2);
-            int offsetY = (int) ((rand.nextDouble() * 2.0 - 1.0) * progress * 2);
-            int offsetZ = (int) ((rand.nextDouble() * 2.0 - 1.0) * progress * 2);
-
-            int x = centerX + offsetX;
-            int y = centerY + offsetY;
-            int z = centerZ + offsetZ;
-
-            int clusterRadius = 1 + rand.nextInt(2);
-            double r = clusterRadius + rand.nextFloat() * 0.5;
-            double r2 = r * r;
-
-            for (int dx = -clusterRadius; dx <= clusterRadius; dx++) {
-                for (int dy = -clusterRadius; dy <= clusterRadius; dy++) {
-                    for (int dz = -clusterRadius; dz <= clusterRadius; dz++) {
-                        int ddx = dx*dx;
-                        int ddy = dy*dy;
-                        int ddz = dz*dz;
-                        int dist2 = ddx + ddy + ddz;
-                        if ((double) dist2 <= r2) {
-                            int bx = x + dx;
-                            int by = y + dy;
-                            int bz = z + dz;
-
-                            // Bounds check
-                            if (by < 1 || by > 310) continue;
-
-                            // Check if this block is in the current chunk
-                            int blockChunkX = bx >> 5;
-                            int blockChunkZ = bz >> 5;
-                            if (blockChunkX != chunk.getX() || blockChunkZ != chunk.getZ()) {
-                                continue; // Skip blocks outside this chunk
-                            }
-
-                            // Count candidate check
-                            candidateChecks++;
-
-                            // Try to place tin ore
-                            if (placeTinOreInChunk(chunk, bx, by, bz)) {
-                                placed++;
-                            }
-                        }
-                    }
-                }
+    private void deleteJournals() {
+        Path dir = getDataDirectory().resolve("journal");
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
             }
+        } catch (IOException e) {
+            LOGGER.atWarning().log("Could not delete old placement journals in %s: %s", dir, e.getMessage());
         }
-        long end = System.nanoTime();
-        long ms = (end - start) / 1_000_000L;
-        LOGGER.atInfo().log("generateVeinInChunk center=(%d,%d,%d) size=%d candidates=%d placed=%d timeMs=%d", centerX, centerY, centerZ, size, candidateChecks, placed, ms);
-        return placed;
     }
-    
+
     /**
-     * Place a single tin ore block in a chunk, only replacing stone-like blocks.
+     * Opens a journal for a command job placing {@code oreBlockId}, or returns
+     * null (the job then runs without undo) if the file cannot be created.
      */
-    private boolean placeTinOreInChunk(WorldChunk chunk, int x, int y, int z) {
+    private PlacementJournal openJournal(World world, int oreBlockId) {
         try {
-            int currentBlock = chunk.getBlock(x, y, z);
-            
-            // Check if current block is replaceable
-            if (isReplaceableBlockId(currentBlock)) {
-                // setBlock: x, y, z, blockId, blockType, rotation, filler, settings
-                // settings: 4 = no particles, helps with performance during generation
-                chunk.setBlock(x, y, z, tinOreId, tinOreType, 0, 0, 4);
-                return true;
+            return PlacementJournal.create(journalDir(world), oreBlockId);
+        } catch (IOException e) {
+            LOGGER.atWarning().log("Could not create a placement journal in %s, the job cannot be undone: %s", journalDir(world), e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveContext(WorldOreContext ctx) {
+        try {
+            ctx.pending.save(pendingFile(ctx.world), OreDefinition.ALL);
+        } catch (IOException e) {
+            LOGGER.atWarning().log("Could not save pending ore placements for world %s: %s", ctx.world.getName(), e.getMessage());
+        }
+        try {
+            ctx.retrogen.save(retrogenFile(ctx.world));
+        } catch (IOException e) {
+            LOGGER.atWarning().log("Could not save retrogen progress for world %s: %s", ctx.world.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps what can be kept of a plan that is not applied: pending blocks go
+     * back to the store for the next load, and a chunk that misses its
+     * generated ore is left for {@code /bronzeage retrogen}.
+     */
+    private void deferPlan(WorldOreContext ctx, ChunkOrePlan plan) {
+        if (plan.pending) {
+            int[] entries = plan.toPendingEntries();
+            ctx.metrics.pendingEvicted.add(ctx.pending.addAll(ChunkUtil.indexChunk(plan.chunkX, plan.chunkZ), entries, 0, entries.length));
+        } else {
+            ctx.retrogen.clearDone(plan.chunkX, plan.chunkZ);
+        }
+    }
+
+    /**
+     * Apply a precomputed plan to its chunk. Runs on the world thread.
+     * @return number of blocks placed, or -1 if the chunk is not in memory
+     */
+    private int applyPlan(WorldOreContext ctx, ChunkOrePlan plan) {
+        GenerationMetrics metrics = ctx.metrics;
+        int totalPlacedLocal = 0;
+        int veinsCreatedLocal = 0;
+        long chunkStart = System.nanoTime();
+
+        // One chunk fetch and biome lookup for all ores of the plan
+        long chunkIndex = ChunkUtil.indexChunk(plan.chunkX, plan.chunkZ);
+        WorldChunk chunk = (WorldChunk) ctx.world.getNonTickingChunk(chunkIndex);
+        if (chunk == null) {
+            deferPlan(ctx, plan);
+            return -1; // chunk not available
+        }
+        if (!plan.pending) {
+            acceptPlan(ctx, plan);
+        }
+        boolean[][] hostRocks = plan.tables.hostRocks(biomeResolver.biomeOf(chunk, plan.tables));
+        ChunkBlockAccess access = blockAccess.get().wrap(chunk);
+
+        for (int v = 0; v < plan.veinCount(); v++) {
+            long start = System.nanoTime();
+            int placed = plan.applyVein(v, access, hostRocks);
+            if (GenerationMetrics.TRACE) {
+                int[] veins = plan.veins;
+                int i = v * ChunkOrePlan.VEIN_STRIDE;
+                LOGGER.atInfo().log("generateVeinInChunk ore=%s center=(%d,%d,%d) size=%d candidates=%d placed=%d timeNs=%d",
+                    plan.tables.ores[plan.veinOre(v)].name, veins[i + 1], veins[i + 2], veins[i + 3], veins[i + 4],
+                    plan.veinCandidates(v), placed, System.nanoTime() - start);
+            }
+
+            if (placed > 0) {
+                totalPlacedLocal += placed;
+                veinsCreatedLocal++;
             }
-            
-            return false;
-        } catch (Exception e) {
-            return false;
         }
+
+        applySpillsToLoadedNeighbours(ctx, plan);
+
+        long chunkNanos = System.nanoTime() - chunkStart;
+        if (plan.pending) {
+            metrics.pendingPlaced.add(totalPlacedLocal);
+            return totalPlacedLocal;
+        }
+        metrics.applyTime.record(chunkNanos);
+        metrics.candidateBlocks.add(plan.blocks.length);
+        metrics.placedBlocks.add(totalPlacedLocal);
+        metrics.veinsPlaced.add(veinsCreatedLocal);
+
+        if (GenerationMetrics.TRACE && veinsCreatedLocal > 0) {
+            LOGGER.atInfo().log("Generated %d ore veins (%d blocks) in chunk [%d, %d] in %d ns",
+                veinsCreatedLocal, totalPlacedLocal, plan.chunkX, plan.chunkZ, chunkNanos);
+        }
+        return totalPlacedLocal;
     }
     
     /**
-     * Fast check if a block ID is replaceable (uses cached IDs).
+     * Initialize and cache ore block IDs for better performance. The tables
+     * are rebuilt whenever block types are loaded or the block asset map
+     * changes size.
+     * @return true if at least one ore can be generated
      */
-    private boolean isReplaceableBlockId(int blockId) {
-        if (blockId == stoneId) return true;
-        if (replaceableBlockIds != null && replaceableBlockIds.contains(blockId)) {
-            return true;
+    private boolean initializeOreTables() {
+        int assetCount = BlockType.getAssetMap().getAssetCount();
+        OreTables tables = oreTables;
+        if (tables != null && !blockTypesChanged && tables.assetCount() == assetCount) {
+            return tables.anyAvailable(); // Already initialized
         }
+        return rebuildOreTables(false).anyAvailable();
+    }
 
-        return false;
+    /**
+     * Compiles the configured ores against the current asset map and
+     * publishes the result. Serialized, so a reload and an asset change
+     * cannot publish tables built from stale settings.
+     * @param force rebuild even if the current tables are up to date
+     */
+    private synchronized OreTables rebuildOreTables(boolean force) {
+        int assetCount = BlockType.getAssetMap().getAssetCount();
+        OreTables tables = oreTables;
+        if (!force && tables != null && !blockTypesChanged && tables.assetCount() == assetCount) {
+            return tables; // Rebuilt by another thread meanwhile
+        }
+        // Cleared before compiling, so a load during the compile triggers another rebuild
+        blockTypesChanged = false;
+
+        tables = OreTables.compile(configuredOres, name -> BlockType.getAssetMap().getIndex(name), assetCount);
+        for (String warning : tables.warnings()) {
+            LOGGER.atWarning().log("%s", warning);
+        }
+        oreTables = tables;
+        System.setProperty(ENGINE_BLOCKS_PROPERTY, String.join(",", tables.blocks()));
+
+        LOGGER.atInfo().log("Initialized ore generation - ores: %s, block assets: %d", tables.blocks(), assetCount);
+        return tables;
     }
     
     // ========== COMMANDS (for manual ore spawning) ==========
@@ -340,6 +575,14 @@ public class BronzeAgePlugin extends JavaPlugin {
             this.setPermissionGroup(GameMode.Creative);
             this.addSubCommand(new SpawnCommand());
             this.addSubCommand(new GenerateCommand());
+            this.addSubCommand(new JobsCommand());
+            this.addSubCommand(new CancelCommand());
+            this.addSubCommand(new StatsCommand());
+            this.addSubCommand(new RetrogenCommand());
+            this.addSubCommand(new LocateCommand());
+            this.addSubCommand(new SurveyCommand());
+            this.addSubCommand(new UndoCommand());
+            this.addSubCommand(new ReloadCommand());
         }
     }
     
@@ -386,10 +629,25 @@ public class BronzeAgePlugin extends JavaPlugin {
             }
             context.sendMessage(Message.raw("Block type found: " + TIN_ORE_BLOCK));
             
-            world.execute(() -> {
-                int placed = spawnTinOreVein(world, x, y, z, size);
-                context.sendMessage(Message.raw("Spawned tin ore vein with " + placed + " blocks at (" + x + ", " + y + ", " + z + ")"));
-            });
+            OreRandom rand = new OreRandom(ThreadLocalRandom.current().nextLong());
+            WorldOreContext ctx = contextFor(world);
+            OreTables tables = initializeOreTables() ? oreTables : null;
+            int tin = tables == null ? -1 : tables.indexOf(OreDefinition.TIN);
+            PlacementJournal journal = tin < 0 ? null : openJournal(world, tables.oreBlockIds[tin]);
+            ctx.jobs.submit(new GenerationJob(
+                "spawn size " + size + " at (" + x + ", " + y + ", " + z + ")", 1,
+                step -> spawnTinOreVein(ctx, x, y, z, size, rand, journal),
+                job -> {
+                    if (journal != null) {
+                        ctx.keepJournal(job.id, journal);
+                    }
+                    context.sendMessage(Message.raw(job.isCancelled()
+                        ? "Tin ore spawn #" + job.id + " cancelled."
+                        : "Spawned tin ore vein with " + job.blocksPlaced() + " blocks at (" + x + ", " + y + ", " + z + ")"
+                            + (journal != null && journal.deferredEntries() > 0
+                                ? " (part of it is placed when its chunks load, and is not undone by /bronzeage undo)" : "")));
+                }
+            ));
         }
     }
     
@@ -429,143 +687,751 @@ public class BronzeAgePlugin extends JavaPlugin {
             int radius = Math.max(1, Math.min(128, radiusArg.get(context)));
             int count = Math.max(1, Math.min(100, countArg.get(context)));
             
+            if (!initializeOreTables()) {
+                context.sendMessage(Message.raw("No ore blocks found, nothing to generate."));
+                return;
+            }
+            OreTables tables = oreTables;
+            int tin = tables.indexOf(OreDefinition.TIN);
+            if (tin < 0) {
+                context.sendMessage(Message.raw("Tin ore is disabled or missing, nothing to generate."));
+                return;
+            }
+            OreDefinition def = tables.ores[tin];
+
+            // Plan every vein on a worker, then stream the chunks they touch in region order,
+            // loading the missing ones instead of parking their blocks in the pending store
+            long jobSeed = ThreadLocalRandom.current().nextLong();
+            WorldOreContext ctx = contextFor(world);
+            String description = "generate " + count + " veins in radius " + radius + " around (" + centerX + ", " + centerZ + ")";
             context.sendMessage(Message.raw("Generating " + count + " tin ore veins in radius " + radius + "..."));
+            planWorkers.execute(() -> {
+                CommandPlan plan = planCommandVeins(jobSeed, count, centerX, centerZ, radius, def, tin);
+                PlacementJournal journal = openJournal(world, tables.oreBlockIds[tin]);
+                // Veins are split over chunks now, so they are not counted in attempted/placed
+                ctx.metrics.commandVeins.add(count);
+                ctx.metrics.candidateBlocks.add(plan.candidateBlocks);
+                ChunkStream<ChunkOrePlan> stream = new ChunkStream<>(world, tickScheduler, description, plan.chunks, planWorkers,
+                    (chunkX, chunkZ) -> plan.take(chunkX, chunkZ, tables),
+                    world::getChunkAsync,
+                    (chunkX, chunkZ, chunkPlan) -> chunkPlan == null ? 0 : applyCommandPlan(ctx, chunkPlan, journal),
+                    finished -> {
+                        ctx.streams.remove(finished);
+                        if (journal != null) {
+                            ctx.keepJournal(finished.id, journal);
+                        }
+                        context.sendMessage(Message.raw((finished.isCancelled() ? "Cancelled job #" + finished.id + " after " : "Generated ")
+                            + count + " veins with " + finished.blocksPlaced() + " total tin ore blocks in "
+                            + finished.processedChunks() + " chunks" + (finished.unavailableChunks() > 0
+                                ? " (" + finished.unavailableChunks() + " chunks unavailable, their ore is placed when they load"
+                                    + " and is not undone by /bronzeage undo)" : "")
+                            + "!"));
+                    });
+                ctx.streams.add(stream);
+                context.sendMessage(Message.raw("Job #" + stream.id + ": " + plan.candidateBlocks + " candidate blocks in "
+                    + plan.chunks.length + " chunks."));
+                stream.start();
+            });
+        }
+    }
+    
+    /**
+     * Lists running generation jobs in every world
+     */
+    private class JobsCommand extends AbstractPlayerCommand {
+        
+        public JobsCommand() {
+            super("jobs", "List running tin ore generation jobs");
+        }
+        
+        @Override
+        protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, 
+                             @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            int listed = 0;
+            for (WorldOreContext ctx : contexts.values()) {
+                for (GenerationJob job : ctx.jobs.jobs()) {
+                    int percent = job.completedSteps() * 100 / job.totalSteps;
+                    context.sendMessage(Message.raw("#" + job.id + " [" + ctx.world.getName() + "] " + job.description
+                        + " - " + job.completedSteps() + "/" + job.totalSteps + " (" + percent + "%), " + job.blocksPlaced() + " blocks"
+                        + (job.isCancelled() ? " (cancelling)" : "")));
+                    listed++;
+                }
+                for (ChunkStream<?> stream : ctx.streams) {
+                    int percent = stream.totalChunks() == 0 ? 100 : (int) ((long) stream.visitedChunks() * 100 / stream.totalChunks());
+                    context.sendMessage(Message.raw("#" + stream.id + " [" + ctx.world.getName() + "] " + stream.description
+                        + " - " + stream.visitedChunks() + "/" + stream.totalChunks() + " chunks (" + percent + "%), " + stream.blocksPlaced() + " blocks"
+                        + (stream.isCancelled() ? " (cancelling)" : "")));
+                    listed++;
+                }
+                for (OreSurvey survey : ctx.surveys) {
+                    int percent = (int) ((long) survey.visitedChunks() * 100 / survey.totalChunks());
+                    context.sendMessage(Message.raw("#" + survey.id + " [" + ctx.world.getName() + "] " + survey.description
+                        + " - " + survey.visitedChunks() + "/" + survey.totalChunks() + " chunks (" + percent + "%)"
+                        + (survey.isCancelled() ? " (cancelling)" : "")));
+                    listed++;
+                }
+            }
+            if (listed == 0) {
+                context.sendMessage(Message.raw("No generation jobs running."));
+            }
+        }
+    }
+    
+    /**
+     * Cancels a running generation job
+     */
+    private class CancelCommand extends AbstractPlayerCommand {
+        
+        @Nonnull
+        private final RequiredArg<Integer> idArg = this.withRequiredArg(
+            "id", "Job id from /bronzeage jobs", ArgTypes.INTEGER
+        );
+        
+        public CancelCommand() {
+            super("cancel", "Cancel a tin ore generation job");
+        }
+        
+        @Override
+        protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, 
+                             @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            int id = idArg.get(context);
+            for (WorldOreContext ctx : contexts.values()) {
+                if (ctx.jobs.cancel(id)) {
+                    context.sendMessage(Message.raw("Cancelling job #" + id + "..."));
+                    return;
+                }
+                for (ChunkStream<?> stream : ctx.streams) {
+                    if (stream.id == id) {
+                        stream.cancel();
+                        context.sendMessage(Message.raw("Cancelling job #" + id + "..."));
+                        return;
+                    }
+                }
+                for (OreSurvey survey : ctx.surveys) {
+                    if (survey.id == id) {
+                        survey.cancel();
+                        context.sendMessage(Message.raw("Cancelling survey #" + id + "..."));
+                        return;
+                    }
+                }
+            }
+            context.sendMessage(Message.raw("No running job #" + id + "."));
+        }
+    }
+    
+    /**
+     * Shows ore generation metrics
+     */
+    private class StatsCommand extends AbstractPlayerCommand {
+        
+        public StatsCommand() {
+            super("stats", "Show tin ore generation statistics");
+        }
+        
+        @Override
+        protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, 
+                             @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            context.sendMessage(Message.raw("Ore generation in " + world.getName() + ":"));
+            WorldOreContext ctx = contextFor(world);
+            for (String line : ctx.metrics.report()) {
+                context.sendMessage(Message.raw(line));
+            }
+            context.sendMessage(Message.raw("Locate predictions: " + ctx.locator.cacheStats()));
+        }
+    }
+    
+    /**
+     * Adds ore to existing chunks around the player or in the whole world
+     */
+    private class RetrogenCommand extends AbstractPlayerCommand {
+        
+        @Nonnull
+        private final RequiredArg<String> targetArg = this.withRequiredArg(
+            "target", "Radius in chunks, 'world' for every saved chunk, or 'stop'", ArgTypes.STRING
+        );
+        
+        public RetrogenCommand() {
+            super("retrogen", "Add ore to chunks generated before the plugin was installed");
+        }
+        
+        @Override
+        protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, 
+                             @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            String target = targetArg.get(context);
+            ChunkStream<?> running = contextFor(world).retrogenRun.get();
+            if ("stop".equalsIgnoreCase(target)) {
+                if (running == null) {
+                    context.sendMessage(Message.raw("No retrogen running in this world."));
+                } else {
+                    running.cancel();
+                    context.sendMessage(Message.raw("Stopping retrogen #" + running.id + "..."));
+                }
+                return;
+            }
+            if (running != null) {
+                context.sendMessage(Message.raw("Retrogen #" + running.id + " is already running in this world; use /bronzeage retrogen stop first."));
+                return;
+            }
+            if (!initializeOreTables()) {
+                context.sendMessage(Message.raw("No ore blocks found, nothing to generate."));
+                return;
+            }
+
+            if ("world".equalsIgnoreCase(target)) {
+                retrogenSavedChunks(context, world, "retrogen world",
+                    Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+                return;
+            }
+
+            int radius;
+            try {
+                radius = Math.max(0, Math.min(256, Integer.parseInt(target)));
+            } catch (NumberFormatException e) {
+                context.sendMessage(Message.raw("Usage: /bronzeage retrogen <radius|world|stop>"));
+                return;
+            }
+            TransformComponent transform = store.getComponent(ref, TransformComponent.getComponentType());
+            if (transform == null) {
+                context.sendMessage(Message.raw("Could not get player position!"));
+                return;
+            }
+            Vector3d pos = transform.getPosition();
+            int centerX = (int) Math.floor(pos.x) >> 5;
+            int centerZ = (int) Math.floor(pos.z) >> 5;
+            retrogenSavedChunks(context, world, "retrogen radius " + radius + " chunks around [" + centerX + ", " + centerZ + "]",
+                centerX - radius, centerZ - radius, centerX + radius, centerZ + radius);
+        }
+
+        /**
+         * Starts a retrogen over the saved chunks within the given chunk
+         * bounds, inclusive. Chunks that were never generated are left alone,
+         * so retrogen never generates terrain.
+         */
+        private void retrogenSavedChunks(CommandContext context, World world, String description,
+                                         int minX, int minZ, int maxX, int maxZ) {
+            context.sendMessage(Message.raw("Listing saved chunks..."));
+            // Reading the chunk index touches every region file, so keep it off the world thread
+            planWorkers.execute(() -> {
+                try {
+                    Collection<Long> indexes = world.getChunkStore().getLoader().getIndexes();
+                    long[] chunks = new long[indexes.size()];
+                    int n = 0;
+                    for (long index : indexes) {
+                        int chunkX = ChunkUtil.xOfChunkIndex(index);
+                        int chunkZ = ChunkUtil.zOfChunkIndex(index);
+                        if (chunkX >= minX && chunkX <= maxX && chunkZ >= minZ && chunkZ <= maxZ) {
+                            chunks[n++] = RetrogenProgress.regionOrderKey(chunkX, chunkZ);
+                        }
+                    }
+                    startRetrogen(context, world, description, Arrays.copyOf(chunks, n));
+                } catch (IOException e) {
+                    context.sendMessage(Message.raw("Could not list saved chunks: " + e.getMessage()));
+                }
+            });
+        }
+    }
+
+    /**
+     * Finds the nearest tin vein predicted from the world seed
+     */
+    private class LocateCommand extends AbstractPlayerCommand {
+        
+        @Nonnull
+        private final DefaultArg<Integer> radiusArg = this.withDefaultArg(
+            "radius", "Search radius in chunks (1-128)", ArgTypes.INTEGER, 16, "Search radius"
+        );
+        
+        public LocateCommand() {
+            super("locate", "Predict the nearest naturally generated tin vein from the world seed");
+        }
+        
+        @Override
+        protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, 
+                             @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            
+            TransformComponent transform = store.getComponent(ref, TransformComponent.getComponentType());
+            if (transform == null) {
+                context.sendMessage(Message.raw("Could not get player position!"));
+                return;
+            }
             
-            world.execute(() -> {
-                int totalPlaced = 0;
-                int veinsCreated = 0;
-                
-                for (int i = 0; i < count; i++) {
-                    int x = centerX + random.nextInt(radius * 2) - radius;
-                    int z = centerZ + random.nextInt(radius * 2) - radius;
-                    int y = MIN_Y + random.nextInt(MAX_Y - MIN_Y);
-                    int size = MIN_VEIN_SIZE + random.nextInt(MAX_VEIN_SIZE - MIN_VEIN_SIZE + 1);
-                    
-                    int placed = spawnTinOreVein(world, x, y, z, size);
-                    if (placed > 0) {
-                        totalPlaced += placed;
-                        veinsCreated++;
+            Vector3d pos = transform.getPosition();
+            int x = (int) Math.floor(pos.x);
+            int y = (int) Math.floor(pos.y);
+            int z = (int) Math.floor(pos.z);
+            int radius = Math.max(1, Math.min(128, radiusArg.get(context)));
+            
+            // Prediction only needs the seed, so it never loads or reads a chunk
+            long start = System.nanoTime();
+            List<OreDefinition> ores = configuredOres;
+            VeinLocator.Result vein = contextFor(world).locator.nearest(ores, OreDefinition.ALL.indexOf(OreDefinition.TIN), x, y, z, radius);
+            double millis = (System.nanoTime() - start) / 1_000_000.0;
+            
+            if (vein == null) {
+                context.sendMessage(Message.raw("No tin vein predicted within " + radius + " chunks."));
+                return;
+            }
+            context.sendMessage(Message.raw(String.format(
+                "Nearest predicted tin vein: (%d, %d, %d), size %d, %.0f blocks away (%+d, %+d, %+d). Searched %d chunks in %.2f ms.",
+                vein.x, vein.y, vein.z, vein.size, vein.distance, vein.x - x, vein.y - y, vein.z - z, vein.chunksScanned, millis)));
+            // The prediction never reads the chunk, so it cannot tell whether the vein survived placement
+            OreDefinition tin = ores.get(OreDefinition.ALL.indexOf(OreDefinition.TIN));
+            context.sendMessage(Message.raw("This is a prediction from the world seed: the vein is missing if its chunk has no host rock there"
+                + (tin.nativeGeneration && !tin.nativeBiomes().isEmpty()
+                    ? " or is in a biome where the world generator places tin itself (" + String.join(", ", tin.nativeBiomes()) + ")" : "")
+                + ", or if the chunk was generated before the plugin was installed and not retrogenned."));
+            if (!initializeOreTables() || oreTables.indexOf(OreDefinition.TIN) < 0) {
+                context.sendMessage(Message.raw("Note: tin generation is disabled or " + TIN_ORE_BLOCK + " is not installed, so no tin is being generated."));
+            }
+        }
+    }
+
+    /**
+     * Measures ore and host rock density in the loaded chunks around the player
+     */
+    private class SurveyCommand extends AbstractPlayerCommand {
+        
+        @Nonnull
+        private final DefaultArg<Integer> radiusArg = this.withDefaultArg(
+            "radius", "Radius in chunks (0-32)", ArgTypes.INTEGER, 4, "Survey radius"
+        );
+        
+        public SurveyCommand() {
+            super("survey", "Count ore per height and biome in loaded chunks");
+        }
+        
+        @Override
+        protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, 
+                             @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            
+            TransformComponent transform = store.getComponent(ref, TransformComponent.getComponentType());
+            if (transform == null) {
+                context.sendMessage(Message.raw("Could not get player position!"));
+                return;
+            }
+            if (!initializeOreTables()) {
+                context.sendMessage(Message.raw("No ore blocks found, nothing to survey."));
+                return;
+            }
+            
+            Vector3d pos = transform.getPosition();
+            int centerX = (int) Math.floor(pos.x) >> 5;
+            int centerZ = (int) Math.floor(pos.z) >> 5;
+            int radius = Math.max(0, Math.min(32, radiusArg.get(context)));
+            
+            // Only chunks already in memory: a survey never loads chunks
+            OreTables tables = oreTables;
+            int side = 2 * radius + 1;
+            long[] chunks = new long[side * side];
+            String[] biomes = new String[chunks.length];
+            int n = 0;
+            for (int cx = centerX - radius; cx <= centerX + radius; cx++) {
+                for (int cz = centerZ - radius; cz <= centerZ + radius; cz++) {
+                    long index = ChunkUtil.indexChunk(cx, cz);
+                    WorldChunk chunk = world.getChunkIfInMemory(index);
+                    if (chunk != null) {
+                        biomes[n] = biomeResolver.biomeOf(chunk, tables);
+                        chunks[n++] = index;
                     }
                 }
-                
-                context.sendMessage(Message.raw("Generated " + veinsCreated + " veins with " + totalPlaced + " total tin ore blocks!"));
+            }
+            if (n == 0) {
+                context.sendMessage(Message.raw("No loaded chunks within " + radius + " chunks."));
+                return;
+            }
+            
+            WorldOreContext ctx = contextFor(world);
+            String description = "survey radius " + radius + " around [" + centerX + ", " + centerZ + "]";
+            OreSurvey survey = new OreSurvey(world, tickScheduler, description, tables, Arrays.copyOf(chunks, n), Arrays.copyOf(biomes, n),
+                index -> {
+                    WorldChunk chunk = world.getChunkIfInMemory(index);
+                    return chunk == null ? null : blockAccess.get().wrap(chunk);
+                },
+                planWorkers, blockCounter,
+                finished -> {
+                    ctx.surveys.remove(finished);
+                    if (finished.isCancelled()) {
+                        context.sendMessage(Message.raw("Cancelled survey #" + finished.id + ", partial counts:"));
+                    }
+                    for (String line : finished.report()) {
+                        context.sendMessage(Message.raw(line));
+                        LOGGER.atInfo().log("%s", line);
+                    }
+                });
+            ctx.surveys.add(survey);
+            context.sendMessage(Message.raw("Surveying " + n + " loaded chunks (survey #" + survey.id + ")..."));
+            survey.start();
+        }
+    }
+
+    /**
+     * Puts back the blocks a spawn or generate job replaced
+     */
+    private class UndoCommand extends AbstractPlayerCommand {
+        
+        @Nonnull
+        private final DefaultArg<Integer> idArg = this.withDefaultArg(
+            "id", "Job id from /bronzeage jobs, 0 for the latest", ArgTypes.INTEGER, 0, "Latest job"
+        );
+        
+        public UndoCommand() {
+            super("undo", "Undo a finished tin ore spawn or generate job");
+        }
+        
+        @Override
+        protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, 
+                             @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            WorldOreContext ctx = contextFor(world);
+            int requested = idArg.get(context);
+            Integer latest = ctx.journals.isEmpty() ? null : ctx.journals.lastKey();
+            int id = requested > 0 ? requested : latest == null ? -1 : latest;
+            // Taken out of the map so the same job is not undone twice at once
+            PlacementJournal journal = id < 0 ? null : ctx.journals.remove(id);
+            if (journal == null) {
+                boolean running = ctx.jobs.jobs().stream().anyMatch(job -> job.id == id)
+                    || ctx.streams.stream().anyMatch(stream -> stream.id == id);
+                context.sendMessage(Message.raw(running ? "Job #" + id + " is still running, wait for it or cancel it first."
+                    : requested > 0 ? "Nothing to undo for job #" + id + " in this world."
+                    : "Nothing to undo in this world."));
+                return;
+            }
+            
+            long[] chunks = journal.chunks();
+            ChunkStream<PlacementJournal.Restore> stream = new ChunkStream<>(world, tickScheduler, "undo job #" + id, chunks, planWorkers,
+                journal::restore,
+                world::getChunkAsync,
+                (chunkX, chunkZ, restore) -> restore == null ? 0 : restoreBlocks(ctx, journal, restore),
+                finished -> {
+                    ctx.streams.remove(finished);
+                    boolean complete = !finished.isCancelled() && finished.unavailableChunks() == 0;
+                    if (complete) {
+                        WorldOreContext.closeJournal(journal);
+                    } else {
+                        // Blocks already restored no longer hold the ore, so a retry skips them
+                        ctx.journals.put(id, journal);
+                    }
+                    context.sendMessage(Message.raw((finished.isCancelled() ? "Cancelled undo of job #" + id + " after restoring "
+                            : "Undid job #" + id + ": restored ") + finished.blocksPlaced() + " of " + journal.entries() + " block types in "
+                        + finished.processedChunks() + " chunks"
+                        + (finished.blocksPlaced() < journal.entries() && complete ? " (the others were changed since)" : "")
+                        + (finished.unavailableChunks() > 0 ? ", " + finished.unavailableChunks() + " chunks unavailable" : "")
+                        + (complete ? "." : "; run /bronzeage undo " + id + " again to finish.")
+                        + (journal.deferredEntries() > 0 ? " Up to " + journal.deferredEntries()
+                            + " blocks the job left for chunks that were not loaded are placed when they load and are not undone." : "")));
+                });
+            ctx.streams.add(stream);
+            context.sendMessage(Message.raw("Job #" + stream.id + ": undoing job #" + id + ", " + journal.entries() + " blocks in "
+                + chunks.length + " chunks" + (journal.isTruncated() ? " (journal was full, later blocks stay)" : "")
+                + ". Block types are restored with their default rotation..."));
+            stream.start();
+        }
+    }
+
+    /**
+     * Reloads ore settings from config.properties
+     */
+    private class ReloadCommand extends AbstractPlayerCommand {
+        
+        public ReloadCommand() {
+            super("reload", "Reload ore generation settings from config.properties");
+        }
+        
+        @Override
+        protected void execute(@Nonnull CommandContext context, @Nonnull Store<EntityStore> store, 
+                             @Nonnull Ref<EntityStore> ref, @Nonnull PlayerRef playerRef, @Nonnull World world) {
+            List<OreDefinition> ores;
+            try {
+                ores = OreConfig.load(configFile(), OreDefinition.ALL);
+            } catch (IOException | IllegalArgumentException e) {
+                context.sendMessage(Message.raw("Config not reloaded, keeping the current settings: " + e.getMessage()));
+                return;
+            }
+            // Chunks already queued finish with the settings they were planned with
+            configuredOres = ores;
+            OreTables tables = rebuildOreTables(true);
+            context.sendMessage(Message.raw("Reloaded " + configFile().getFileName() + ":"));
+            for (OreDefinition ore : ores) {
+                context.sendMessage(Message.raw(describe(ore)));
+            }
+            for (String warning : tables.warnings()) {
+                context.sendMessage(Message.raw("Warning: " + warning));
+            }
+        }
+    }
+
+    /**
+     * Starts a retrogen run over the given chunks, in region order.
+     */
+    private void startRetrogen(CommandContext context, World world, String description, long[] chunks) {
+        Arrays.sort(chunks);
+        WorldOreContext ctx = contextFor(world);
+        RetrogenProgress progress = ctx.retrogen;
+        RetrogenRun run = new RetrogenRun(world, tickScheduler, description, chunks, progress,
+            (chunkX, chunkZ) -> hasEngineOre(ctx, chunkX, chunkZ, oreTables), planWorkers,
+            (chunkX, chunkZ) -> planChunk(ctx, chunkX, chunkZ, oreTables, null),
+            world::getChunkAsync,
+            (chunkX, chunkZ, plan) -> {
+                if (plan != null) {
+                    return applyPlan(ctx, plan);
+                }
+                if (world.getChunkIfInMemory(ChunkUtil.indexChunk(chunkX, chunkZ)) == null) {
+                    return -1;
+                }
+                acceptPlan(ctx, null);
+                return 0;
+            },
+            finished -> {
+                ctx.retrogenRun.compareAndSet(finished, null);
+                ctx.streams.remove(finished);
+                saveContext(ctx);
+                context.sendMessage(Message.raw((finished.isCancelled() ? "Stopped retrogen #" + finished.id + ": " : "Retrogen #" + finished.id + " done: ")
+                    + finished.processedChunks() + " chunks processed, " + finished.skippedChunks() + " already had ore, "
+                    + finished.unavailableChunks() + " unavailable, " + finished.blocksPlaced() + " ore blocks placed."));
             });
+        if (!ctx.retrogenRun.compareAndSet(null, run)) {
+            context.sendMessage(Message.raw("A retrogen is already running in this world."));
+            return;
         }
+        ctx.streams.add(run);
+        context.sendMessage(Message.raw("Started retrogen #" + run.id + " over " + chunks.length + " chunks ("
+            + progress.doneCount() + " chunks in this world already have ore)."));
+        run.start();
     }
     
+    /**
+     * Looks for a block of any ore the engine generates in a resident chunk,
+     * within the heights its veins reach, stopping at the first one. Used by
+     * retrogen to leave alone chunks that got ore before their progress was
+     * recorded. Runs on the world thread.
+     * @return true if the chunk is in memory and holds ore
+     */
+    private boolean hasEngineOre(WorldOreContext ctx, int chunkX, int chunkZ, OreTables tables) {
+        WorldChunk chunk = ctx.world.getChunkIfInMemory(ChunkUtil.indexChunk(chunkX, chunkZ));
+        if (chunk == null) {
+            return false;
+        }
+        int[] ids = new int[tables.ores.length];
+        int count = 0;
+        int minY = VeinRasterizer.MAX_BLOCK_Y;
+        int maxY = VeinRasterizer.MIN_BLOCK_Y;
+        for (int ore = 0; ore < tables.ores.length; ore++) {
+            if (tables.available(ore)) {
+                ids[count++] = tables.oreBlockIds[ore];
+                minY = Math.min(minY, tables.ores[ore].minY - VeinRasterizer.EXTENT);
+                maxY = Math.max(maxY, tables.ores[ore].maxY + VeinRasterizer.EXTENT);
+            }
+        }
+        ChunkBlockAccess blocks = blockAccess.get().wrap(chunk);
+        int baseX = chunkX << 5;
+        int baseZ = chunkZ << 5;
+        for (int y = Math.max(VeinRasterizer.MIN_BLOCK_Y, minY); y <= Math.min(VeinRasterizer.MAX_BLOCK_Y, maxY); y++) {
+            for (int z = baseZ; z < baseZ + 32; z++) {
+                for (int x = baseX; x < baseX + 32; x++) {
+                    int block = blocks.getBlock(x, y, z);
+                    for (int i = 0; i < count; i++) {
+                        if (block == ids[i]) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rasterizes the veins of a generate command into one plan. Runs on a worker thread.
+     * Each vein is drawn from its own seed, so a job's veins do not depend on
+     * how many blocks earlier veins produced.
+     */
+    private CommandPlan planCommandVeins(long jobSeed, int count, int centerX, int centerZ, int radius,
+                                         OreDefinition def, int ore) {
+        PlacementBatch batch = placementBatch.get();
+        batch.clear();
+        VeinRasterizer rasterizer = veinRasterizer.get();
+        OreRandom rand = new OreRandom(jobSeed);
+        for (int step = 0; step < count; step++) {
+            rand.reset(OreRandom.veinSeed(jobSeed, step));
+            int x = centerX + rand.nextInt(radius * 2) - radius;
+            int z = centerZ + rand.nextInt(radius * 2) - radius;
+            int y = def.minY + rand.nextInt(def.maxY - def.minY);
+            int size = def.minVeinSize + rand.nextInt(def.maxVeinSize - def.minVeinSize + 1);
+            rasterizer.rasterize(x, y, z, size, rand);
+            rasterizer.clipY();
+            for (int w = 0; w < VeinRasterizer.words(); w++) {
+                long bits = rasterizer.word(w);
+                int bx = rasterizer.blockX(w);
+                while (bits != 0L) {
+                    int bit = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    batch.add(bx, rasterizer.blockY(bit), rasterizer.blockZ(bit));
+                }
+            }
+        }
+        CommandPlan plan = CommandPlan.build(batch, ore);
+        batch.clear();
+        return plan;
+    }
+
+    /**
+     * Applies one chunk of a generate command. Runs on the world thread.
+     * @param journal records the replaced blocks, or null
+     * @return number of blocks placed, or -1 if the chunk is not in memory
+     */
+    private int applyCommandPlan(WorldOreContext ctx, ChunkOrePlan plan, PlacementJournal journal) {
+        WorldChunk chunk = (WorldChunk) ctx.world.getNonTickingChunk(ChunkUtil.indexChunk(plan.chunkX, plan.chunkZ));
+        if (chunk == null) {
+            // The load failed or the chunk was unloaded again: place the blocks on its next load, without undo
+            deferPlan(ctx, plan);
+            if (journal != null) {
+                journal.deferred(plan.blocks.length);
+            }
+            return -1;
+        }
+        boolean[][] hostRocks = plan.tables.hostRocks(biomeResolver.biomeOf(chunk, plan.tables));
+        ChunkBlockAccess access = blockAccess.get().wrap(chunk);
+        if (journal != null) {
+            access = journal.begin(access, plan.chunkX, plan.chunkZ);
+        }
+        int placed = 0;
+        for (int v = 0; v < plan.veinCount(); v++) {
+            placed += plan.applyVein(v, access, hostRocks);
+        }
+        if (journal != null) {
+            journal.end();
+        }
+        ctx.metrics.placedBlocks.add(placed);
+        return placed;
+    }
+
+    /**
+     * Puts back one chunk of a journaled job, skipping blocks that no longer
+     * hold the job's ore. The journal only has block ids, so blocks come back
+     * with their default rotation. Runs on the world thread.
+     * @return number of blocks restored, or -1 if the chunk is not in memory
+     */
+    private int restoreBlocks(WorldOreContext ctx, PlacementJournal journal, PlacementJournal.Restore restore) {
+        WorldChunk chunk = (WorldChunk) ctx.world.getNonTickingChunk(ChunkUtil.indexChunk(restore.chunkX, restore.chunkZ));
+        if (chunk == null) {
+            return -1;
+        }
+        ChunkBlockAccess access = blockAccess.get().wrap(chunk);
+        int baseX = restore.chunkX << 5;
+        int baseZ = restore.chunkZ << 5;
+        int restored = 0;
+        for (int i = 0; i < restore.locals.length; i++) {
+            int local = restore.locals[i];
+            int x = baseX + ChunkOrePlan.localX(local);
+            int y = ChunkOrePlan.y(local);
+            int z = baseZ + ChunkOrePlan.localZ(local);
+            if (access.getBlock(x, y, z) == journal.oreBlockId) {
+                access.setBlock(x, y, z, restore.previous[i]);
+                restored++;
+            }
+        }
+        return restored;
+    }
+
     /**
      * Spawns a tin ore vein at the specified position (for commands).
+     * @param journal records the replaced blocks, or null
      */
-    private int spawnTinOreVein(World world, int centerX, int centerY, int centerZ, int size) {
-        if (!initializeBlockIds()) {
+    private int spawnTinOreVein(WorldOreContext ctx, int centerX, int centerY, int centerZ, int size, OreRandom rand,
+                                PlacementJournal journal) {
+        if (!initializeOreTables()) {
             return 0;
         }
+        OreTables tables = oreTables;
+        int tin = tables.indexOf(OreDefinition.TIN);
+        if (tin < 0) {
+            return 0;
+        }
+        int tinOreId = tables.oreBlockIds[tin];
 
+        GenerationMetrics metrics = ctx.metrics;
         int placed = 0;
         long start = System.nanoTime();
-        int candidateChecks = 0;
+        long allocStart = Allocations.currentThreadBytes();
         int chunkLookups = 0;
 
-        // Collect candidate placements grouped by chunk index, then flush per-chunk
-        Map<Long, List<int[]>> placementsPerChunk = new HashMap<>();
-
-        for (int i = 0; i < size; i++) {
-            float progress = (float) i / size;
-            int offsetX = (int) ((random.nextDouble() * 2.0 - 1.0) * progress * 2);
-            int offsetY = (int) ((random.nextDouble() * 2.0 - 1.0) * progress * 2);
-            int offsetZ = (int) ((random.nextDouble() * 2.0 - 1.0) * progress * 2);
-
-            int x = centerX + offsetX;
-            int y = centerY + offsetY;
-            int z = centerZ + offsetZ;
-
-            int clusterRadius = 1 + random.nextInt(2);
-
-            double r = clusterRadius + random.nextFloat() * 0.5;
-            double r2 = r * r;
-
-            for (int dx = -clusterRadius; dx <= clusterRadius; dx++) {
-                for (int dy = -clusterRadius; dy <= clusterRadius; dy++) {
-                    for (int dz = -clusterRadius; dz <= clusterRadius; dz++) {
-                        int ddx = dx*dx;
-                        int ddy = dy*dy;
-                        int ddz = dz*dz;
-                        int dist2 = ddx + ddy + ddz;
-                        if ((double) dist2 <= r2) {
-                            int bx = x + dx;
-                            int by = y + dy;
-                            int bz = z + dz;
-
-                            if (by < 1 || by > 310) continue;
-
-                            candidateChecks++;
-                            long chunkIndex = ChunkUtil.indexChunkFromBlock(bx, bz);
-                            List<int[]> list = placementsPerChunk.get(chunkIndex);
-                            if (list == null) {
-                                list = new ArrayList<>();
-                                placementsPerChunk.put(chunkIndex, list);
-                            }
-                            list.add(new int[]{bx, by, bz});
-                        }
-                    }
-                }
+        // Collect candidate placements as packed longs, then group them by chunk
+        PlacementBatch batch = placementBatch.get();
+        batch.clear();
+
+        VeinRasterizer rasterizer = veinRasterizer.get();
+        rasterizer.rasterize(centerX, centerY, centerZ, size, rand);
+        int candidateChecks = rasterizer.clipY();
+        for (int w = 0; w < VeinRasterizer.words(); w++) {
+            long bits = rasterizer.word(w);
+            int bx = rasterizer.blockX(w);
+            while (bits != 0L) {
+                int bit = Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                batch.add(bx, rasterizer.blockY(bit), rasterizer.blockZ(bit));
             }
         }
 
         // Flush placements per chunk: fetch the chunk once and apply placements
-        for (Map.Entry<Long, List<int[]>> e : placementsPerChunk.entrySet()) {
-            long chunkIndex = e.getKey();
-            List<int[]> list = e.getValue();
-            WorldChunk chunk = (WorldChunk) world.getNonTickingChunk(chunkIndex);
+        batch.sortByChunk();
+        int n = batch.size();
+        for (int groupStart = 0; groupStart < n; ) {
+            int groupEnd = batch.chunkGroupEnd(groupStart);
+            long first = batch.get(groupStart);
+            long chunkIndex = ChunkUtil.indexChunk(PlacementBatch.chunkX(first), PlacementBatch.chunkZ(first));
+            WorldChunk chunk = (WorldChunk) ctx.world.getNonTickingChunk(chunkIndex);
             chunkLookups++;
-            if (chunk == null) continue;
 
-            for (int[] coord : list) {
-                int bx = coord[0];
-                int by = coord[1];
-                int bz = coord[2];
+            if (chunk != null) {
+                boolean[] hostRocks = tables.hostRocks(biomeResolver.biomeOf(chunk, tables))[tin];
+                ChunkBlockAccess access = blockAccess.get().wrap(chunk);
+                if (journal != null) {
+                    access = journal.begin(access, PlacementBatch.chunkX(first), PlacementBatch.chunkZ(first));
+                }
+                for (int i = groupStart; i < groupEnd; i++) {
+                    long packed = batch.get(i);
+                    int bx = PlacementBatch.blockX(packed);
+                    int by = PlacementBatch.blockY(packed);
+                    int bz = PlacementBatch.blockZ(packed);
 
-                try {
-                    int currentBlock = chunk.getBlock(bx, by, bz);
-                    if (isReplaceableBlockId(currentBlock)) {
-                        chunk.setBlock(bx, by, bz, tinOreId, tinOreType, 0, 0, 4);
+                    // Coordinates come from a clipped vein mask, so they are always inside the chunk
+                    if (access.replaceHostRock(bx, by, bz, hostRocks, tinOreId)) {
                         placed++;
                     }
-                } catch (Exception ex) {
-                    // ignore problematic coords during flush
+                }
+                if (journal != null) {
+                    journal.end();
+                }
+            } else {
+                // Chunk not in memory: keep the blocks until it is loaded
+                int[] entries = new int[groupEnd - groupStart];
+                for (int i = groupStart; i < groupEnd; i++) {
+                    long packed = batch.get(i);
+                    int local = ChunkOrePlan.pack(PlacementBatch.blockX(packed) & 31, PlacementBatch.blockY(packed), PlacementBatch.blockZ(packed) & 31);
+                    entries[i - groupStart] = PendingPlacements.entry(tin, local);
+                }
+                metrics.pendingEvicted.add(ctx.pending.addAll(chunkIndex, entries, 0, entries.length));
+                metrics.spilledBlocks.add(entries.length);
+                if (journal != null) {
+                    journal.deferred(entries.length);
                 }
             }
+            groupStart = groupEnd;
         }
 
-        long end = System.nanoTime();
-        long elapsedMs = (end - start) / 1_000_000L;
-        LOGGER.atInfo().log("spawnTinOreVein: size=%d candidates=%d chunks=%d placed=%d timeMs=%d", size, candidateChecks, chunkLookups, placed, elapsedMs);
+        metrics.commandVeins.increment();
+        metrics.veinsAttempted.increment();
+        if (placed > 0) {
+            metrics.veinsPlaced.increment();
+        }
+        metrics.candidateBlocks.add(candidateChecks);
+        metrics.placedBlocks.add(placed);
 
-        return placed;
-    }
-    
-    /**
-     * Places a single tin ore block (for commands), only replacing stone-like blocks.
-     */
-    private boolean placeTinOre(World world, int x, int y, int z) {
-        try {
-            long chunkIndex = ChunkUtil.indexChunkFromBlock(x, z);
-            WorldChunk chunk = (WorldChunk) world.getNonTickingChunk(chunkIndex);
-            
-            if (chunk == null) {
-                return false;
-            }
-            
-            int currentBlock = chunk.getBlock(x, y, z);
-            
-            if (isReplaceableBlockId(currentBlock)) {
-                chunk.setBlock(x, y, z, tinOreId, tinOreType, 0, 0, 4);
-                return true;
-            }
-            
-            return false;
-        } catch (Exception e) {
-            return false;
+        if (GenerationMetrics.TRACE) {
+            long elapsedNs = System.nanoTime() - start;
+            long allocBytes = allocStart < 0 ? -1L : Allocations.currentThreadBytes() - allocStart;
+            LOGGER.atInfo().log("spawnTinOreVein: size=%d candidates=%d chunks=%d placed=%d timeNs=%d allocBytes=%d", size, candidateChecks, chunkLookups, placed, elapsedNs, allocBytes);
         }
+
+        return placed;
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+package com.jordansbored.bronzeage;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.hypixel.hytale.server.core.universe.world.World;
+
+/**
+ * Work that runs on a world's thread in slices of bounded length.
+ *
+ * At most one slice is pending on the world at a time. When a slice runs out
+ * of budget with work left over, the next one is posted one tick later rather
+ * than immediately, so the world thread gets to run its own tick in between.
+ */
+abstract class BudgetedWorldTask {
+
+    // One world tick at 30 TPS
+    static final long TICK_MILLIS = 33L;
+
+    private final World world;
+    private final ScheduledExecutorService ticker;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    BudgetedWorldTask(World world, ScheduledExecutorService ticker) {
+        this.world = world;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Makes sure a slice is scheduled on the world thread. Safe to call from any thread.
+     */
+    final void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            world.execute(this::drain);
+        }
+    }
+
+    /**
+     * Runs on the world thread until {@code deadline} (a {@link System#nanoTime()} value).
+     * @return true if work remains
+     */
+    abstract boolean runSlice(long deadline);
+
+    /**
+     * @return true if there is queued work; may be called from any thread
+     */
+    abstract boolean hasWork();
+
+    /**
+     * @return nanoseconds one slice may run for
+     */
+    abstract long budgetNanos();
+
+    private void drain() {
+        if (!runSlice(System.nanoTime() + budgetNanos())) {
+            scheduled.set(false);
+            // Work may have been queued after the slice finished but before the flag was cleared
+            if (!hasWork() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+        ticker.schedule(() -> world.execute(this::drain), TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
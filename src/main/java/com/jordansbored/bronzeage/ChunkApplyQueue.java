@@ -0,0 +1,209 @@
+package com.jordansbored.bronzeage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+import com.hypixel.hytale.server.core.universe.world.World;
+
+/**
+ * Applies precomputed chunk plans on a world's thread within a fixed time
+ * budget per tick.
+ *
+ * Planner threads {@link #submit} plans from any thread. Work is coalesced per
+ * chunk index: a chunk is queued once however many plans arrive for it, and
+ * at most {@link #CHUNKS_PER_TICK} chunks are applied per tick, so a burst of
+ * new chunks is spread over several ticks instead of stalling one. Plans of
+ * chunks unloaded before their turn are dropped. Past
+ * {@link #MAX_QUEUED_CHUNKS} the oldest chunk is shed instead of letting the
+ * backlog grow; dropped and shed plans go to the applier's
+ * {@link Applier#defer}.
+ */
+final class ChunkApplyQueue extends BudgetedWorldTask {
+
+    // Time the world thread may spend applying plans per tick
+    static final long APPLY_BUDGET_NANOS = 2_000_000L;
+    // Chunks applied per tick; override with -Dbronzeage.applyChunksPerTick
+    static final int CHUNKS_PER_TICK = Integer.getInteger("bronzeage.applyChunksPerTick", 8);
+    // Chunks waiting before the oldest is shed; override with -Dbronzeage.applyQueueMax
+    static final int MAX_QUEUED_CHUNKS = Integer.getInteger("bronzeage.applyQueueMax", 4096);
+
+    // Drain rate is averaged over the last RATE_SECONDS whole seconds
+    private static final int RATE_SECONDS = 10;
+    private static final int RATE_BUCKETS = 16;
+
+    /**
+     * Applies plans on the world thread.
+     */
+    interface Applier {
+        /**
+         * @return number of blocks placed, or -1 if the chunk is not in memory
+         */
+        int apply(ChunkOrePlan plan);
+
+        /**
+         * Keeps what it can of a plan that will not be applied because the
+         * queue is full.
+         */
+        void defer(ChunkOrePlan plan);
+    }
+
+    /** Queued work of one chunk. */
+    private static final class Slot {
+        ChunkOrePlan generated;
+        ChunkOrePlan pending;
+    }
+
+    private final Applier applier;
+    private final GenerationMetrics metrics;
+    // Insertion order, so chunks are applied first come, first served; guarded by itself
+    private final LinkedHashMap<Long, Slot> chunks = new LinkedHashMap<>();
+    private volatile int depth;
+
+    // Chunks applied per second, in a ring of one-second buckets (written by the world thread only)
+    private final AtomicLongArray drainedPerSecond = new AtomicLongArray(RATE_BUCKETS);
+    private final AtomicLongArray bucketSecond = new AtomicLongArray(RATE_BUCKETS);
+
+    ChunkApplyQueue(World world, ScheduledExecutorService ticker, GenerationMetrics metrics, Applier applier) {
+        super(world, ticker);
+        this.metrics = metrics;
+        this.applier = applier;
+    }
+
+    /**
+     * Queues a plan, merging it with work already queued for its chunk, and
+     * makes sure a drain is scheduled on the world thread.
+     */
+    void submit(ChunkOrePlan plan) {
+        long chunkIndex = ChunkUtil.indexChunk(plan.chunkX, plan.chunkZ);
+        Slot shed = null;
+        synchronized (chunks) {
+            Slot slot = chunks.get(chunkIndex);
+            if (slot == null) {
+                if (chunks.size() >= MAX_QUEUED_CHUNKS) {
+                    shed = removeEldest();
+                }
+                slot = new Slot();
+                chunks.put(chunkIndex, slot);
+            } else {
+                metrics.applyCoalesced.increment();
+            }
+            if (!plan.pending) {
+                // Planning is deterministic, so a second plan for the chunk is the same plan
+                if (slot.generated == null) {
+                    slot.generated = plan;
+                }
+            } else if (slot.pending == null) {
+                slot.pending = plan;
+            } else {
+                slot.pending = ChunkOrePlan.pending(plan.chunkX, plan.chunkZ, plan.tables,
+                    concat(slot.pending.toPendingEntries(), plan.toPendingEntries()));
+            }
+            depth = chunks.size();
+        }
+        // Deferred outside the lock: the applier writes to stores other planner threads are waiting on
+        if (shed != null) {
+            metrics.applyShed.increment();
+            if (shed.generated != null) {
+                applier.defer(shed.generated);
+            }
+            if (shed.pending != null) {
+                applier.defer(shed.pending);
+            }
+        }
+        schedule();
+    }
+
+    private Slot removeEldest() {
+        Iterator<Slot> eldest = chunks.values().iterator();
+        Slot slot = eldest.next();
+        eldest.remove();
+        return slot;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] joined = new int[a.length + b.length];
+        System.arraycopy(a, 0, joined, 0, a.length);
+        System.arraycopy(b, 0, joined, a.length, b.length);
+        return joined;
+    }
+
+    private Slot poll() {
+        synchronized (chunks) {
+            if (chunks.isEmpty()) {
+                return null;
+            }
+            Slot slot = removeEldest();
+            depth = chunks.size();
+            return slot;
+        }
+    }
+
+    @Override
+    boolean runSlice(long deadline) {
+        int applied = 0;
+        Slot slot;
+        while (applied < CHUNKS_PER_TICK && (slot = poll()) != null) {
+            applied++;
+            apply(slot.generated);
+            apply(slot.pending);
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        recordDrained(applied);
+        return depth > 0;
+    }
+
+    private void apply(ChunkOrePlan plan) {
+        if (plan != null && applier.apply(plan) < 0) {
+            // Unloaded before its turn; the applier keeps what it can for later
+            metrics.applyDropped.increment();
+        }
+    }
+
+    /**
+     * @return number of chunks waiting to be applied
+     */
+    int depth() {
+        return depth;
+    }
+
+    private void recordDrained(int chunkCount) {
+        long second = System.nanoTime() / 1_000_000_000L;
+        int bucket = (int) Math.floorMod(second, (long) RATE_BUCKETS);
+        if (bucketSecond.get(bucket) != second) {
+            drainedPerSecond.set(bucket, 0L);
+            bucketSecond.set(bucket, second);
+        }
+        drainedPerSecond.addAndGet(bucket, chunkCount);
+    }
+
+    /**
+     * @return chunks applied per second, averaged over the last few seconds
+     */
+    double drainRate() {
+        long now = System.nanoTime() / 1_000_000_000L;
+        long drained = 0L;
+        for (int bucket = 0; bucket < RATE_BUCKETS; bucket++) {
+            long second = bucketSecond.get(bucket);
+            // Whole seconds only; the current one is still filling up
+            if (second < now && second >= now - RATE_SECONDS) {
+                drained += drainedPerSecond.get(bucket);
+            }
+        }
+        return drained / (double) RATE_SECONDS;
+    }
+
+    @Override
+    boolean hasWork() {
+        return depth > 0;
+    }
+
+    @Override
+    long budgetNanos() {
+        return APPLY_BUDGET_NANOS;
+    }
+}
@@ -0,0 +1,27 @@
+package com.jordansbored.bronzeage;
+
+/**
+ * Block reads and writes for one chunk, in world coordinates.
+ *
+ * The generation engine only talks to chunks through this interface, so it
+ * can run against a live {@code WorldChunk} ({@link WorldChunkBlockAccess})
+ * or an in-memory chunk in benchmarks and tests.
+ */
+interface ChunkBlockAccess {
+
+    int getBlock(int x, int y, int z);
+
+    void setBlock(int x, int y, int z, int blockId);
+
+    /**
+     * Replaces the block with {@code oreBlockId} if it is a host rock.
+     * @return true if the block was replaced
+     */
+    default boolean replaceHostRock(int x, int y, int z, boolean[] hostRocks, int oreBlockId) {
+        if (HostRockTable.isReplaceable(hostRocks, getBlock(x, y, z))) {
+            setBlock(x, y, z, oreBlockId);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,203 @@
+package com.jordansbored.bronzeage;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed ore placements for a single chunk.
+ *
+ * Plans are built off the world thread by {@link OrePlanner} and only applied
+ * on it. A plan covers every ore of the chunk, so the chunk is fetched and
+ * written once however many ores it has. Every candidate block is packed into one int as chunk-local
+ * coordinates: {@code (y << 10) | (z << 5) | x}. Candidates are grouped vein
+ * by vein; within a vein each block appears once.
+ *
+ * Blocks of veins that cross the chunk edge are kept in {@link #spills}, one
+ * int per block: {@code (neighbour << 27) | PendingPlacements.entry(ore, pos)},
+ * where the neighbour code {@code (dz + 1) * 3 + (dx + 1)} names one of the
+ * eight surrounding chunks. They go to {@link PendingPlacements} until that
+ * chunk is in memory.
+ */
+final class ChunkOrePlan {
+
+    /** Ints stored per vein in {@link #veins}: end offset, center x/y/z, size, ore index. */
+    static final int VEIN_STRIDE = 6;
+
+    private static final int NEIGHBOUR_SHIFT = 27;
+    private static final int[] NO_SPILLS = new int[0];
+
+    final int chunkX;
+    final int chunkZ;
+    /** Ores the plan was built for; vein ore indices point into {@link OreTables#ores}. */
+    final OreTables tables;
+    final int[] blocks;
+    final int[] veins;
+    /** Blocks that fall into neighbouring chunks, sorted by neighbour. */
+    final int[] spills;
+    /** True if the plan holds blocks taken from {@link PendingPlacements}, not planned veins. */
+    final boolean pending;
+
+    ChunkOrePlan(int chunkX, int chunkZ, OreTables tables, int[] blocks, int[] veins, int[] spills) {
+        this(chunkX, chunkZ, tables, blocks, veins, spills, false);
+    }
+
+    private ChunkOrePlan(int chunkX, int chunkZ, OreTables tables, int[] blocks, int[] veins, int[] spills, boolean pending) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.tables = tables;
+        this.blocks = blocks;
+        this.veins = veins;
+        this.spills = spills;
+        this.pending = pending;
+    }
+
+    /**
+     * Builds a plan from blocks that veins of neighbouring chunks left for
+     * this chunk. Each ore becomes one vein of size 0 centered on the chunk;
+     * blocks of ores that cannot be generated are dropped.
+     * @param entries packed {@link PendingPlacements} entries, sorted in place
+     */
+    static ChunkOrePlan pending(int chunkX, int chunkZ, OreTables tables, int[] entries) {
+        // The ore sits in the high bits, so sorting groups the entries by ore
+        Arrays.sort(entries);
+        int[] blocks = new int[entries.length];
+        int[] veins = new int[VEIN_STRIDE * tables.ores.length];
+        int blockCount = 0;
+        int veinCount = 0;
+        for (int start = 0; start < entries.length; ) {
+            int ore = PendingPlacements.ore(entries[start]);
+            int end = start;
+            while (end < entries.length && PendingPlacements.ore(entries[end]) == ore) {
+                end++;
+            }
+            if (ore < tables.ores.length && tables.available(ore)) {
+                for (int i = start; i < end; i++) {
+                    blocks[blockCount++] = PendingPlacements.local(entries[i]);
+                }
+                int v = veinCount++ * VEIN_STRIDE;
+                veins[v] = blockCount;
+                veins[v + 1] = (chunkX << 5) + 16;
+                veins[v + 2] = 0;
+                veins[v + 3] = (chunkZ << 5) + 16;
+                veins[v + 4] = 0;
+                veins[v + 5] = ore;
+            }
+            start = end;
+        }
+        return new ChunkOrePlan(chunkX, chunkZ, tables,
+            Arrays.copyOf(blocks, blockCount),
+            Arrays.copyOf(veins, veinCount * VEIN_STRIDE), NO_SPILLS, true);
+    }
+
+    /**
+     * @return the blocks of this plan as {@link PendingPlacements} entries, to
+     * keep them when the chunk went away before the plan was applied
+     */
+    int[] toPendingEntries() {
+        int[] entries = new int[blocks.length];
+        for (int v = 0; v < veinCount(); v++) {
+            int ore = veinOre(v);
+            for (int i = veinStart(v); i < veins[v * VEIN_STRIDE]; i++) {
+                entries[i] = PendingPlacements.entry(ore, blocks[i]);
+            }
+        }
+        return entries;
+    }
+
+    int veinCount() {
+        return veins.length / VEIN_STRIDE;
+    }
+
+    /**
+     * @return number of candidate blocks planned for vein {@code vein}
+     */
+    int veinCandidates(int vein) {
+        return veins[vein * VEIN_STRIDE] - veinStart(vein);
+    }
+
+    /**
+     * @return index of the vein's ore in {@link OreTables#ores}
+     */
+    int veinOre(int vein) {
+        return veins[vein * VEIN_STRIDE + 5];
+    }
+
+    /**
+     * Places the ore for one vein, replacing only host rock. Ore placed by an
+     * earlier vein is not host rock, so overlapping veins keep the first ore.
+     * @param hostRocks host rock tables per ore, from {@link OreTables#hostRocks}
+     * @return number of blocks placed
+     */
+    int applyVein(int vein, ChunkBlockAccess chunk, boolean[][] hostRocks) {
+        int ore = veinOre(vein);
+        boolean[] rocks = hostRocks[ore];
+        int oreBlockId = tables.oreBlockIds[ore];
+        int baseX = chunkX << 5;
+        int baseZ = chunkZ << 5;
+        int end = veins[vein * VEIN_STRIDE];
+        int placed = 0;
+        for (int i = veinStart(vein); i < end; i++) {
+            int packed = blocks[i];
+            if (chunk.replaceHostRock(baseX + localX(packed), y(packed), baseZ + localZ(packed), rocks, oreBlockId)) {
+                placed++;
+            }
+        }
+        return placed;
+    }
+
+    private int veinStart(int vein) {
+        return vein == 0 ? 0 : veins[(vein - 1) * VEIN_STRIDE];
+    }
+
+    static int spill(int dx, int dz, int entry) {
+        return (((dz + 1) * 3 + dx + 1) << NEIGHBOUR_SHIFT) | entry;
+    }
+
+    /**
+     * @return chunk x offset (-1..1) of the neighbour a spilled block belongs to
+     */
+    static int spillDx(int spill) {
+        return (spill >>> NEIGHBOUR_SHIFT) % 3 - 1;
+    }
+
+    /**
+     * @return chunk z offset (-1..1) of the neighbour a spilled block belongs to
+     */
+    static int spillDz(int spill) {
+        return (spill >>> NEIGHBOUR_SHIFT) / 3 - 1;
+    }
+
+    /**
+     * @return the {@link PendingPlacements} entry of a spilled block
+     */
+    static int spillEntry(int spill) {
+        return spill & ((1 << NEIGHBOUR_SHIFT) - 1);
+    }
+
+    /**
+     * @return end of the run of spills starting at {@code start} that go to the same neighbour
+     */
+    int spillGroupEnd(int start) {
+        int neighbour = spills[start] >>> NEIGHBOUR_SHIFT;
+        int end = start + 1;
+        while (end < spills.length && spills[end] >>> NEIGHBOUR_SHIFT == neighbour) {
+            end++;
+        }
+        return end;
+    }
+
+    static int pack(int localX, int y, int localZ) {
+        return (y << 10) | (localZ << 5) | localX;
+    }
+
+    static int localX(int packed) {
+        return packed & 31;
+    }
+
+    static int localZ(int packed) {
+        return (packed >>> 5) & 31;
+    }
+
+    static int y(int packed) {
+        return packed >>> 10;
+    }
+}
@@ -0,0 +1,250 @@
+package com.jordansbored.bronzeage;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+import com.hypixel.hytale.server.core.universe.world.World;
+
+/**
+ * Applies work to a list of chunks, loading the ones that are not in memory.
+ *
+ * Chunks are visited in region order. For each one a worker thread prepares
+ * a plan (ore to place, or blocks to restore) and the chunk is loaded asynchronously; at most {@link #MAX_IN_FLIGHT}
+ * chunks are planned or loading at once, so loads overlap with placement and
+ * memory stays bounded however many chunks the stream covers. The world thread
+ * applies at most {@link #CHUNKS_PER_TICK} plans per tick within its time
+ * budget, as soon as their chunk is resident, and then drops them.
+ *
+ * @param <P> the per-chunk plan
+ */
+class ChunkStream<P> extends BudgetedWorldTask {
+
+    // Chunks planned or loading at once; override with -Dbronzeage.streamInFlight
+    static final int MAX_IN_FLIGHT = Integer.getInteger("bronzeage.streamInFlight", 16);
+    // Chunks applied per tick; override with -Dbronzeage.streamChunksPerTick
+    static final int CHUNKS_PER_TICK = Integer.getInteger("bronzeage.streamChunksPerTick", 4);
+    static final long BUDGET_NANOS = 2_000_000L;
+
+    /**
+     * Plans one chunk on a worker thread.
+     */
+    interface Planner<P> {
+        /**
+         * @return the plan, or null if the chunk needs no work
+         */
+        P plan(int chunkX, int chunkZ);
+    }
+
+    /**
+     * Applies one plan on the world thread, once loading its chunk finished
+     * or failed.
+     */
+    interface Applier<P> {
+        /**
+         * @param plan the plan, or null if the chunk needs no work
+         * @return number of blocks placed, or -1 if the chunk is not in memory
+         */
+        int apply(int chunkX, int chunkZ, P plan);
+    }
+
+    /** A planned chunk whose load has finished. */
+    private static final class Loaded<P> {
+        final int chunkX;
+        final int chunkZ;
+        final P plan;
+
+        Loaded(int chunkX, int chunkZ, P plan) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.plan = plan;
+        }
+    }
+
+    final int id = GenerationJob.nextId();
+    final String description;
+    private final long[] chunks;
+    private final Executor workers;
+    private final Planner<P> planner;
+    private final LongFunction<CompletableFuture<?>> loader;
+    private final Applier<P> applier;
+    private final Consumer<? super ChunkStream<P>> onFinished;
+
+    private final Queue<Loaded<P>> loaded = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Next entry of chunks to start (world thread only)
+    private int cursor;
+    private volatile boolean finished;
+
+    private volatile int processed;
+    private volatile int skipped;
+    private volatile int unavailable;
+    private volatile long blocksPlaced;
+    private volatile boolean cancelled;
+
+    /**
+     * @param chunks chunk region order keys from {@link RetrogenProgress#regionOrderKey}, sorted
+     * @param loader starts loading a chunk by index
+     * @param onFinished called on the world thread once the stream completes or is cancelled
+     */
+    ChunkStream(World world, ScheduledExecutorService ticker, String description, long[] chunks,
+                Executor workers, Planner<P> planner, LongFunction<CompletableFuture<?>> loader, Applier<P> applier,
+                Consumer<? super ChunkStream<P>> onFinished) {
+        super(world, ticker);
+        this.description = description;
+        this.chunks = chunks;
+        this.workers = workers;
+        this.planner = planner;
+        this.loader = loader;
+        this.applier = applier;
+        this.onFinished = onFinished;
+    }
+
+    /**
+     * Checked before a chunk is loaded and again before its plan is applied.
+     * @return true if a chunk needs no work and is skipped
+     */
+    boolean skip(int chunkX, int chunkZ) {
+        return false;
+    }
+
+    /**
+     * Called on the world thread after a chunk's plan was applied.
+     */
+    void applied(int chunkX, int chunkZ) {
+    }
+
+    @Override
+    final boolean runSlice(long deadline) {
+        int applied = 0;
+        Loaded<P> chunk;
+        while (applied < CHUNKS_PER_TICK && (chunk = loaded.poll()) != null) {
+            inFlight.decrementAndGet();
+            applied++;
+            if (!cancelled) {
+                apply(chunk);
+            }
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        startLoads();
+
+        if (inFlight.get() == 0 && (cancelled || cursor >= chunks.length)) {
+            if (!finished) {
+                finished = true;
+                onFinished.accept(this);
+            }
+            return false;
+        }
+        return !loaded.isEmpty();
+    }
+
+    private void apply(Loaded<P> chunk) {
+        // Loading may have generated the chunk, which then got its work from the generation event
+        if (skip(chunk.chunkX, chunk.chunkZ)) {
+            skipped++;
+            return;
+        }
+        int placed = applier.apply(chunk.chunkX, chunk.chunkZ, chunk.plan);
+        if (placed < 0) {
+            unavailable++;
+            return;
+        }
+        applied(chunk.chunkX, chunk.chunkZ);
+        processed++;
+        blocksPlaced += placed;
+    }
+
+    /**
+     * Plans and starts loading chunks until {@link #MAX_IN_FLIGHT} are in flight.
+     */
+    private void startLoads() {
+        while (!cancelled && cursor < chunks.length && inFlight.get() < MAX_IN_FLIGHT) {
+            long key = chunks[cursor++];
+            int chunkX = RetrogenProgress.keyChunkX(key);
+            int chunkZ = RetrogenProgress.keyChunkZ(key);
+            if (skip(chunkX, chunkZ)) {
+                skipped++;
+                continue;
+            }
+            inFlight.incrementAndGet();
+            workers.execute(() -> {
+                P plan = planner.plan(chunkX, chunkZ);
+                // A failed load is handed to the applier too, which finds the chunk missing
+                loader.apply(ChunkUtil.indexChunk(chunkX, chunkZ)).whenComplete((c, error) -> {
+                    loaded.add(new Loaded<>(chunkX, chunkZ, plan));
+                    schedule();
+                });
+            });
+        }
+    }
+
+    @Override
+    final boolean hasWork() {
+        return !finished && (!loaded.isEmpty() || inFlight.get() == 0);
+    }
+
+    @Override
+    final long budgetNanos() {
+        return BUDGET_NANOS;
+    }
+
+    /**
+     * Starts the stream on the world thread.
+     */
+    void start() {
+        schedule();
+    }
+
+    /**
+     * Stops starting new chunks; chunks already in flight are dropped unapplied.
+     */
+    void cancel() {
+        cancelled = true;
+        schedule();
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    int totalChunks() {
+        return chunks.length;
+    }
+
+    /**
+     * @return chunks that were visited: processed, skipped or unavailable
+     */
+    int visitedChunks() {
+        return processed + skipped + unavailable;
+    }
+
+    int processedChunks() {
+        return processed;
+    }
+
+    /**
+     * @return chunks {@link #skip} left out
+     */
+    int skippedChunks() {
+        return skipped;
+    }
+
+    /**
+     * @return chunks that could not be loaded or unloaded before their turn
+     */
+    int unavailableChunks() {
+        return unavailable;
+    }
+
+    long blocksPlaced() {
+        return blocksPlaced;
+    }
+}
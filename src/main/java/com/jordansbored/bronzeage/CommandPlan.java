@@ -0,0 +1,90 @@
+package com.jordansbored.bronzeage;
+
+import java.util.Arrays;
+
+/**
+ * Every block of a command's veins, grouped per chunk and ordered by region,
+ * ready to be streamed through a {@link ChunkStream}.
+ *
+ * Built on a worker thread from one {@link PlacementBatch} holding all veins;
+ * blocks where veins overlap are kept once. Each chunk's blocks are packed
+ * {@link PendingPlacements} entries and are released as soon as the chunk has
+ * been taken. Thread-safe once built.
+ */
+final class CommandPlan {
+
+    /** Region order keys ({@link RetrogenProgress#regionOrderKey}) of the chunks the veins touch, sorted. */
+    final long[] chunks;
+    /** Distinct candidate blocks over all chunks. */
+    final int candidateBlocks;
+    // Entries of chunks[i], null once taken
+    private final int[][] entries;
+
+    private CommandPlan(long[] chunks, int[][] entries, int candidateBlocks) {
+        this.chunks = chunks;
+        this.entries = entries;
+        this.candidateBlocks = candidateBlocks;
+    }
+
+    /**
+     * @param batch placements of every vein; sorted in place
+     * @param ore ore index of every placement
+     */
+    static CommandPlan build(PlacementBatch batch, int ore) {
+        batch.sortByChunk();
+        int n = batch.size();
+        int groups = 0;
+        for (int start = 0; start < n; start = batch.chunkGroupEnd(start)) {
+            groups++;
+        }
+
+        // Chunk groups come out in packed chunk order; re-sort them by region
+        long[] order = new long[groups];
+        int[][] byGroup = new int[groups][];
+        int candidates = 0;
+        int g = 0;
+        for (int start = 0; start < n; g++) {
+            int end = batch.chunkGroupEnd(start);
+            int[] chunk = new int[end - start];
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                long packed = batch.get(i);
+                if (i > start && packed == batch.get(i - 1)) {
+                    continue; // overlapping veins
+                }
+                int local = ChunkOrePlan.pack(PlacementBatch.blockX(packed) & 31, PlacementBatch.blockY(packed), PlacementBatch.blockZ(packed) & 31);
+                chunk[count++] = PendingPlacements.entry(ore, local);
+            }
+            byGroup[g] = Arrays.copyOf(chunk, count);
+            candidates += count;
+            long first = batch.get(start);
+            order[g] = RetrogenProgress.regionOrderKey(PlacementBatch.chunkX(first), PlacementBatch.chunkZ(first));
+            start = end;
+        }
+
+        long[] chunks = order.clone();
+        Arrays.sort(chunks);
+        int[][] entries = new int[groups][];
+        for (int i = 0; i < groups; i++) {
+            entries[Arrays.binarySearch(chunks, order[i])] = byGroup[i];
+        }
+        return new CommandPlan(chunks, entries, candidates);
+    }
+
+    /**
+     * Hands out the blocks of a chunk once and releases them.
+     * @return the chunk's blocks as a pending plan, or null if it has none left
+     */
+    ChunkOrePlan take(int chunkX, int chunkZ, OreTables tables) {
+        int i = Arrays.binarySearch(chunks, RetrogenProgress.regionOrderKey(chunkX, chunkZ));
+        if (i < 0) {
+            return null;
+        }
+        int[] chunk;
+        synchronized (entries) {
+            chunk = entries[i];
+            entries[i] = null;
+        }
+        return chunk == null ? null : ChunkOrePlan.pending(chunkX, chunkZ, tables, chunk);
+    }
+}
@@ -0,0 +1,88 @@
+package com.jordansbored.bronzeage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A command-driven generation job, split into resumable steps (one vein each)
+ * so the {@link GenerationJobScheduler} can spread it over many ticks.
+ *
+ * Steps run on the world thread; progress fields are volatile so
+ * {@code /bronzeage jobs} can read them from anywhere.
+ */
+final class GenerationJob {
+
+    /**
+     * One unit of work.
+     */
+    interface Step {
+        /**
+         * @param index step number, starting at 0
+         * @return number of blocks placed
+         */
+        int run(int index);
+    }
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+
+    final int id = nextId();
+    final String description;
+    final int totalSteps;
+    private final Step step;
+    private final Consumer<GenerationJob> onFinished;
+
+    private volatile int completedSteps;
+    private volatile int blocksPlaced;
+    private volatile boolean cancelled;
+
+    /**
+     * @return a new id, shared with other cancellable work such as {@link ChunkStream}
+     */
+    static int nextId() {
+        return NEXT_ID.getAndIncrement();
+    }
+
+    /**
+     * @param onFinished called on the world thread once the job completes or is cancelled
+     */
+    GenerationJob(String description, int totalSteps, Step step, Consumer<GenerationJob> onFinished) {
+        this.description = description;
+        this.totalSteps = totalSteps;
+        this.step = step;
+        this.onFinished = onFinished;
+    }
+
+    /**
+     * Runs the next step.
+     * @return true if the job has more steps to run
+     */
+    boolean runStep() {
+        int index = completedSteps;
+        int placed = step.run(index);
+        if (placed > 0) {
+            blocksPlaced += placed;
+        }
+        completedSteps = index + 1;
+        return completedSteps < totalSteps;
+    }
+
+    void finish() {
+        onFinished.accept(this);
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    int completedSteps() {
+        return completedSteps;
+    }
+
+    int blocksPlaced() {
+        return blocksPlaced;
+    }
+}
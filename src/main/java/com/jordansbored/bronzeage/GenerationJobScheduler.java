@@ -0,0 +1,88 @@
+package com.jordansbored.bronzeage;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.hypixel.hytale.server.core.universe.world.World;
+
+/**
+ * Runs queued {@link GenerationJob}s for one world a step at a time within a
+ * per-tick time budget.
+ *
+ * Jobs take turns one step each, starting where the previous tick stopped, so
+ * a large job cannot starve one queued after it. A tick overruns the budget
+ * by at most one step.
+ */
+final class GenerationJobScheduler extends BudgetedWorldTask {
+
+    // Per-tick budget for command jobs; override with -Dbronzeage.jobBudgetMicros
+    static final long DEFAULT_BUDGET_NANOS = Long.getLong("bronzeage.jobBudgetMicros", 3_000L) * 1_000L;
+
+    private final List<GenerationJob> jobs = new CopyOnWriteArrayList<>();
+    private final long budgetNanos;
+    // Index of the job that runs first in the next slice (world thread only)
+    private int cursor;
+
+    GenerationJobScheduler(World world, ScheduledExecutorService ticker, long budgetNanos) {
+        super(world, ticker);
+        this.budgetNanos = budgetNanos;
+    }
+
+    void submit(GenerationJob job) {
+        jobs.add(job);
+        schedule();
+    }
+
+    /**
+     * @return a snapshot of the jobs that have not finished yet
+     */
+    List<GenerationJob> jobs() {
+        return jobs;
+    }
+
+    /**
+     * Flags a job for cancellation; it is dropped at its next turn.
+     * @return true if the job belongs to this scheduler
+     */
+    boolean cancel(int jobId) {
+        for (GenerationJob job : jobs) {
+            if (job.id == jobId) {
+                job.cancel();
+                schedule();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    boolean runSlice(long deadline) {
+        while (!jobs.isEmpty()) {
+            if (cursor >= jobs.size()) {
+                cursor = 0;
+            }
+            GenerationJob job = jobs.get(cursor);
+            if (job.isCancelled() || !job.runStep()) {
+                jobs.remove(cursor);
+                job.finish();
+            } else {
+                cursor++;
+            }
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        return !jobs.isEmpty();
+    }
+
+    @Override
+    boolean hasWork() {
+        return !jobs.isEmpty();
+    }
+
+    @Override
+    long budgetNanos() {
+        return budgetNanos;
+    }
+}
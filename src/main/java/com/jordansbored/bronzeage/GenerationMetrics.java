@@ -0,0 +1,120 @@
+package com.jordansbored.bronzeage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and latency histograms for ore generation.
+ *
+ * Replaces per-vein and per-chunk log lines in the hot path: recording is a
+ * striped {@link LongAdder} increment with no formatting or I/O. Numbers are
+ * shown by {@code /bronzeage stats} and a periodic summary log line. Set
+ * {@code -Dbronzeage.trace=true} to also log every vein.
+ */
+final class GenerationMetrics {
+
+    /** Opt-in per-vein and per-chunk trace logging. */
+    static final boolean TRACE = Boolean.getBoolean("bronzeage.trace");
+
+    final LongAdder chunksProcessed = new LongAdder();
+    final LongAdder chunksWithOre = new LongAdder();
+    /** New chunks whose ores are all placed by native generator assignments. */
+    final LongAdder chunksNative = new LongAdder();
+    final LongAdder veinsAttempted = new LongAdder();
+    final LongAdder veinsPlaced = new LongAdder();
+    final LongAdder candidateBlocks = new LongAdder();
+    final LongAdder placedBlocks = new LongAdder();
+    final LongAdder commandVeins = new LongAdder();
+    /** Veins left out before rasterizing because no host rock was near their center. */
+    final LongAdder veinsSkippedNoHost = new LongAdder();
+    /** Blocks read to build host rock summaries of new chunks. */
+    final LongAdder occupancyReads = new LongAdder();
+    /** Blocks stored for a chunk other than the one being generated. */
+    final LongAdder spilledBlocks = new LongAdder();
+    /** Blocks placed from the pending store. */
+    final LongAdder pendingPlaced = new LongAdder();
+    /** Pending blocks dropped because the store was full. */
+    final LongAdder pendingEvicted = new LongAdder();
+    /** Plans merged into work already queued for their chunk. */
+    final LongAdder applyCoalesced = new LongAdder();
+    /** Plans dropped because their chunk was unloaded before its turn. */
+    final LongAdder applyDropped = new LongAdder();
+    /** Queued chunks shed because the apply queue was full. */
+    final LongAdder applyShed = new LongAdder();
+
+    /** Worker-thread time to plan one chunk. */
+    final LatencyHistogram planTime = new LatencyHistogram();
+    /** World-thread time to apply one chunk plan. */
+    final LatencyHistogram applyTime = new LatencyHistogram();
+    /** Time to build the host rock summary of one new chunk. */
+    final LatencyHistogram occupancyTime = new LatencyHistogram();
+
+    private final LongSupplier queueDepth;
+    private final DoubleSupplier drainRate;
+    private final LongSupplier pendingBlocks;
+    // Placed block count at the last periodic summary
+    private long lastSummaryPlaced = -1L;
+
+    /**
+     * @param queueDepth current number of chunks waiting for the world thread
+     * @param drainRate chunks applied per second by the world threads
+     * @param pendingBlocks current number of blocks waiting for their chunk to load
+     */
+    GenerationMetrics(LongSupplier queueDepth, DoubleSupplier drainRate, LongSupplier pendingBlocks) {
+        this.queueDepth = queueDepth;
+        this.drainRate = drainRate;
+        this.pendingBlocks = pendingBlocks;
+    }
+
+    long queueDepth() {
+        return queueDepth.getAsLong();
+    }
+
+    /**
+     * @return human readable lines for {@code /bronzeage stats}
+     */
+    List<String> report() {
+        List<String> lines = new ArrayList<>();
+        long veins = veinsAttempted.sum();
+        long candidates = candidateBlocks.sum();
+        lines.add("Chunks: processed " + chunksProcessed.sum() + ", with ore " + chunksWithOre.sum()
+            + ", left to the world generator " + chunksNative.sum());
+        lines.add("Veins: attempted " + veins + ", placed " + veinsPlaced.sum() + " (" + percent(veinsPlaced.sum(), veins) + "), from commands " + commandVeins.sum()
+            + ", skipped without host rock " + veinsSkippedNoHost.sum());
+        lines.add("Blocks: candidates " + candidates + ", placed " + placedBlocks.sum() + " (" + percent(placedBlocks.sum(), candidates) + ")");
+        lines.add("Plan time/chunk: " + planTime.summary());
+        lines.add("Apply time/chunk: " + applyTime.summary());
+        lines.add("Host rock summary/chunk: " + occupancyTime.summary() + ", " + occupancyReads.sum() + " blocks read");
+        lines.add(String.format("Apply queue: depth %d, draining %.1f chunks/s, coalesced %d, dropped %d (unloaded), shed %d (full)",
+            queueDepth(), drainRate.getAsDouble(), applyCoalesced.sum(), applyDropped.sum(), applyShed.sum()));
+        lines.add("Cross-chunk blocks: spilled " + spilledBlocks.sum() + ", placed " + pendingPlaced.sum()
+            + ", waiting " + pendingBlocks.getAsLong() + ", evicted " + pendingEvicted.sum());
+        return lines;
+    }
+
+    /**
+     * @return a one-line summary, or null if nothing was placed since the last call
+     */
+    synchronized String periodicSummary() {
+        long placed = placedBlocks.sum();
+        if (placed == lastSummaryPlaced) {
+            return null;
+        }
+        lastSummaryPlaced = placed;
+        return "chunks=" + chunksProcessed.sum()
+            + " veins=" + veinsPlaced.sum() + "/" + veinsAttempted.sum()
+            + " skipped=" + veinsSkippedNoHost.sum()
+            + " blocks=" + placed + "/" + candidateBlocks.sum()
+            + " queue=" + queueDepth()
+            + String.format(" drain=%.1f/s", drainRate.getAsDouble())
+            + " pending=" + pendingBlocks.getAsLong()
+            + " apply[" + applyTime.summary() + "]";
+    }
+
+    private static String percent(long part, long whole) {
+        return whole == 0 ? "0%" : (part * 100 / whole) + "%";
+    }
+}
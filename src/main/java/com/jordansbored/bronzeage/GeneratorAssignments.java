@@ -0,0 +1,197 @@
+package com.jordansbored.bronzeage;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Compiles ore definitions into HytaleGenerator assignment graphs, one per
+ * ore and biome, so the world generator and the Java post-pass place ore from
+ * the same settings.
+ *
+ * Run at build time by the {@code generateOreAssignments} Gradle task, which
+ * writes {@code Server/HytaleGenerator/Assignments/<Biome>/<Biome>_<Ore>Ore.json}
+ * for every biome in {@link OreDefinition#nativeBiomes()}. The Y range, spawn
+ * chance, ore block and the biome's host rocks come from the definition; the
+ * density shaping of the vein is fixed. With {@code <ore>.native=true} in
+ * {@code config.properties} the plugin leaves new chunks in those biomes to
+ * the generator.
+ */
+final class GeneratorAssignments {
+
+    // Weight of the ore among the biome's weighted assignments
+    private static final int WEIGHT = 40;
+
+    private GeneratorAssignments() {
+    }
+
+    /**
+     * @param args output directory ({@code Server/HytaleGenerator/Assignments}),
+     *             and optionally a {@code config.properties} to compile instead of the defaults
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            throw new IllegalArgumentException("usage: GeneratorAssignments <assignments dir> [config.properties]");
+        }
+        Path out = Paths.get(args[0]);
+        List<OreDefinition> ores = OreDefinition.ALL;
+        if (args.length == 2) {
+            Properties properties = new Properties();
+            try (Reader in = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                properties.load(in);
+            }
+            ores = OreConfig.parse(properties, OreDefinition.ALL);
+        }
+        for (OreDefinition ore : ores) {
+            if (!ore.enabled) {
+                continue;
+            }
+            for (String biome : ore.nativeBiomes()) {
+                Path file = out.resolve(biome).resolve(exportName(ore, biome) + ".json");
+                Files.createDirectories(file.getParent());
+                Files.writeString(file, toJson(assignment(ore, biome), 0) + "\n", StandardCharsets.UTF_8);
+                System.out.println("Wrote " + file);
+            }
+        }
+    }
+
+    /**
+     * @return the name the biome's generator graph imports the assignment by, e.g. {@code Plains1_TinOre}
+     */
+    static String exportName(OreDefinition ore, String biome) {
+        return biome + "_" + prefix(ore) + "Ore";
+    }
+
+    /**
+     * Builds the assignment graph of one ore in one biome.
+     */
+    static Map<String, Object> assignment(OreDefinition ore, String biome) {
+        String p = prefix(ore);
+        String seed = p + "Ore";
+
+        List<Object> hostRocks = new ArrayList<>();
+        List<String> rocks = new ArrayList<>(List.of(ore.hostRocks.base));
+        rocks.addAll(List.of(ore.hostRocks.byBiome.get(biome)));
+        for (String rock : rocks) {
+            hostRocks.add(node("Material." + p + rock, "Solid", rock));
+        }
+
+        Map<String, Object> pattern = node("Ceiling." + p + "Pattern", "Type", "Ceiling", "Skip", false,
+            "Ceiling", node("BlockSet." + p + "Ceiling", "Type", "BlockSet", "Skip", false,
+                "BlockSet", node("BlockSet." + p + "HostRocks", "Inclusive", true, "Materials", hostRocks)),
+            "Origin", node("BlockType.EmptyOrigin", "Type", "BlockType", "Skip", false,
+                "Material", node("Material.Empty", "Solid", "Empty")));
+
+        Map<String, Object> scanner = node("ColumnLinear." + p + "Scanner", "Type", "ColumnLinear", "Skip", false,
+            "MaxY", ore.maxY, "MinY", ore.minY, "RelativeToPosition", false, "BaseHeightName", "Bedrock",
+            "TopDownOrder", false, "ResultCap", 1);
+
+        Map<String, Object> material = node("Solidity." + p + "Material", "Type", "Solidity",
+            "Solid", node("Constant." + p + "OreBlock", "Type", "Constant",
+                "Material", node("Material." + ore.block, "Solid", ore.block)));
+
+        Map<String, Object> noise = node("Normalizer." + p + "Noise", "Type", "Normalizer", "Skip", false,
+            "FromMin", -1, "FromMax", 1, "ToMin", -0.25, "ToMax", 0.25,
+            "Inputs", List.of(node("SimplexNoise3D." + p + "Noise", "Type", "SimplexNoise3D", "Skip", false,
+                "Lacunarity", 2, "Persistence", 0.5, "Octaves", 2, "ScaleXZ", 3, "ScaleY", 3, "Seed", seed)));
+        Map<String, Object> cluster = node("Normalizer." + p + "Cluster", "Type", "Normalizer", "Skip", false,
+            "FromMin", -1, "FromMax", 1, "ToMin", -0.6, "ToMax", 0.6,
+            "Inputs", List.of(node("Anchor." + p + "Anchor", "Type", "Anchor", "Skip", false, "Reversed", false,
+                "Inputs", List.of(node("Cube." + p + "Cube", "Type", "Cube", "Skip", false,
+                    "Curve", node("ManualCurve." + p + "Curve", "Type", "Manual",
+                        "Points", List.of(
+                            node("CurvePoint." + p + "In", "In", 0, "Out", 1),
+                            node("CurvePoint." + p + "Out", "In", 4, "Out", -2))))))));
+        Map<String, Object> density = node("Sum." + p + "Density", "Type", "Sum", "Skip", false,
+            "Inputs", List.of(noise, cluster));
+
+        Map<String, Object> mask = node("BlockMask." + p + "Mask",
+            "DontPlace", node("BlockSet." + p + "DontPlace", "Inclusive", true,
+                "Materials", List.of(node("Material.EmptySpace", "Solid", "Empty"))),
+            "DontReplace", node("BlockSet." + p + "DontReplace", "Inclusive", true,
+                "Materials", List.of(node("Material.NoReplace", "Solid", "Empty"))));
+
+        // Same reach as the Java rasterizer, so veins have the same extent either way
+        Map<String, Object> range = node("Point3D." + p + "Range",
+            "X", VeinRasterizer.EXTENT, "Y", VeinRasterizer.EXTENT, "Z", VeinRasterizer.EXTENT);
+
+        Map<String, Object> prop = node("Density." + p + "Ore", "Type", "Density", "Skip", false,
+            "Pattern", pattern, "Scanner", scanner, "Material", material, "Density", density,
+            "PlacementMask", mask, "Range", range);
+
+        return node("Weighted.Assignments-" + ore.name + "-" + biome.replaceAll("\\d+$", "").toLowerCase(Locale.ROOT),
+            "Type", "Weighted", "ExportAs", exportName(ore, biome),
+            // The Java post-pass rolls spawnChance per chunk; the generator skips the rest
+            "SkipChance", Math.round((1.0 - ore.spawnChance) * 1_000_000) / 1_000_000.0,
+            "Seed", seed,
+            "WeightedAssignments", List.of(node("Weight." + p, "Weight", WEIGHT,
+                "Assignments", node("Constant." + p + "Ore", "Type", "Constant", "Prop", prop))));
+    }
+
+    // tin -> Tin
+    private static String prefix(OreDefinition ore) {
+        return ore.name.substring(0, 1).toUpperCase(Locale.ROOT) + ore.name.substring(1);
+    }
+
+    private static Map<String, Object> node(String id, Object... keysAndValues) {
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("$NodeId", id);
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            node.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return node;
+    }
+
+    /**
+     * Writes JSON in the tab-indented layout of the hand-written generator assets.
+     */
+    static String toJson(Object value, int depth) {
+        StringBuilder out = new StringBuilder();
+        write(out, value, depth);
+        return out.toString();
+    }
+
+    private static void write(StringBuilder out, Object value, int depth) {
+        if (value instanceof Map) {
+            out.append("{\n");
+            int i = 0;
+            Map<?, ?> map = (Map<?, ?>) value;
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                out.append("\t".repeat(depth + 1)).append(quote(e.getKey().toString())).append(":\t");
+                write(out, e.getValue(), depth + 1);
+                out.append(++i < map.size() ? ",\n" : "\n");
+            }
+            out.append("\t".repeat(depth)).append('}');
+        } else if (value instanceof List) {
+            out.append('[');
+            List<?> list = (List<?>) value;
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    out.append(", ");
+                }
+                write(out, list.get(i), depth + 1);
+            }
+            out.append(']');
+        } else if (value instanceof String) {
+            out.append(quote((String) value));
+        } else if (value instanceof Double) {
+            double d = (Double) value;
+            out.append(d == Math.rint(d) ? Long.toString((long) d) : Double.toString(d));
+        } else {
+            out.append(value);
+        }
+    }
+
+    private static String quote(String s) {
+        return '"' + s.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
@@ -0,0 +1,69 @@
+package com.jordansbored.bronzeage;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * {@link HostRocks} compiled into flat lookup tables indexed by block asset
+ * index, one table per biome plus one for unknown biomes.
+ *
+ * Callers pick the table for a chunk once and then test every candidate block
+ * with {@link #isReplaceable(boolean[], int)}, which is a bounds check and an
+ * array load: no hashing and no boxing.
+ */
+final class HostRockTable {
+
+    private final boolean[] fallback;
+    private final Map<String, boolean[]> byBiome;
+
+    private HostRockTable(boolean[] fallback, Map<String, boolean[]> byBiome) {
+        this.fallback = fallback;
+        this.byBiome = byBiome;
+    }
+
+    /**
+     * Resolves every rock name through {@code indexOf}. Names that do not
+     * resolve to a block are left out of the tables and added to {@code unknown}.
+     */
+    static HostRockTable compile(HostRocks rocks, ToIntFunction<String> indexOf, int assetCount, Collection<String> unknown) {
+        boolean[] base = new boolean[assetCount];
+        mark(base, rocks.base, indexOf, unknown);
+
+        boolean[] fallback = base.clone();
+        mark(fallback, rocks.fallback, indexOf, unknown);
+
+        Map<String, boolean[]> byBiome = new HashMap<>();
+        for (Map.Entry<String, String[]> e : rocks.byBiome.entrySet()) {
+            boolean[] table = base.clone();
+            mark(table, e.getValue(), indexOf, unknown);
+            byBiome.put(e.getKey(), table);
+        }
+        return new HostRockTable(fallback, byBiome);
+    }
+
+    private static void mark(boolean[] table, String[] names, ToIntFunction<String> indexOf, Collection<String> unknown) {
+        for (String name : names) {
+            int id = indexOf.applyAsInt(name);
+            if (id >= 0 && id < table.length) {
+                table[id] = true;
+            } else {
+                unknown.add(name);
+            }
+        }
+    }
+
+    /**
+     * @param biome biome key, or null if unknown
+     * @return the lookup table to use for chunks in that biome
+     */
+    boolean[] forBiome(String biome) {
+        boolean[] table = biome != null ? byBiome.get(biome) : null;
+        return table != null ? table : fallback;
+    }
+
+    static boolean isReplaceable(boolean[] table, int blockId) {
+        return blockId >= 0 && blockId < table.length && table[blockId];
+    }
+}
@@ -0,0 +1,69 @@
+package com.jordansbored.bronzeage;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Names of the blocks an ore may replace, with extra host rocks per biome.
+ *
+ * Biome keys match the folders under {@code Server/HytaleGenerator/Assignments}.
+ * Chunks whose biome is not listed (or cannot be resolved) use the base rocks
+ * plus every biome-specific rock, which is the set the plugin always used.
+ */
+final class HostRocks {
+
+    /** Host rocks for tin, mirroring the rocks used by the native tin assignments. */
+    static final HostRocks TIN = new HostRocks(
+        new String[] {
+            "Rock_Stone", "Rock_Stone_Cobble", "Rock_Stone_Mossy",
+            "Rock_Basalt", "Rock_Basalt_Cobble",
+            "Rock_Granite", "Rock_Granite_Cobble",
+            "Dirt", "Dirt_Grass", "Dirt_Dry",
+            "Gravel", "Clay"
+        },
+        biomes(
+            "Desert1", new String[] { "Rock_Sandstone", "Rock_Sandstone_Cobble", "Rock_Sandstone_Red" },
+            "Plains1", new String[] { "Rock_Marble", "Rock_Marble_Cobble" },
+            "Taiga1", new String[] { "Rock_Slate", "Rock_Snow" }
+        ),
+        new String[] {
+            "Rock_Sandstone", "Rock_Sandstone_Cobble",
+            "Rock_Marble", "Rock_Marble_Cobble"
+        }
+    );
+
+    /** Host rocks for coal: the same rocks in every biome. */
+    static final HostRocks COAL = new HostRocks(
+        new String[] {
+            "Rock_Stone", "Rock_Stone_Cobble", "Rock_Stone_Mossy",
+            "Rock_Sandstone", "Rock_Sandstone_Cobble",
+            "Rock_Basalt", "Rock_Basalt_Cobble",
+            "Rock_Marble", "Rock_Marble_Cobble",
+            "Rock_Granite", "Rock_Granite_Cobble",
+            "Dirt", "Dirt_Grass", "Dirt_Dry",
+            "Gravel", "Clay"
+        },
+        biomes(),
+        new String[0]
+    );
+
+    final String[] base;
+    final Map<String, String[]> byBiome;
+    // Added on top of the base rocks for chunks in an unlisted biome
+    final String[] fallback;
+
+    HostRocks(String[] base, Map<String, String[]> byBiome, String[] fallback) {
+        this.base = base;
+        this.byBiome = Collections.unmodifiableMap(byBiome);
+        this.fallback = fallback;
+    }
+
+    private static Map<String, String[]> biomes(Object... biomeAndRocks) {
+        Map<String, String[]> map = new LinkedHashMap<>();
+        for (int i = 0; i < biomeAndRocks.length; i += 2) {
+            map.put((String) biomeAndRocks[i], (String[]) biomeAndRocks[i + 1]);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,93 @@
+package com.jordansbored.bronzeage;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two nanosecond buckets.
+ *
+ * Recording is one striped increment, so it can be called from the world
+ * thread and every planner thread without contention. Percentiles are
+ * reported as the upper bound of the bucket they fall in.
+ */
+final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[BUCKETS - 1 - Long.numberOfLeadingZeros(nanos | 1L)].increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    long count() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @param fraction percentile as a fraction, e.g. 0.99
+     * @return upper bound in nanoseconds of the bucket holding that percentile, 0 if empty
+     */
+    long percentileNanos(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0L;
+        }
+        long rank = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+            }
+        }
+        return maxNanos();
+    }
+
+    /**
+     * @return "count=.. avg=.. p50=.. p99=.. max=.." with times in microseconds
+     */
+    String summary() {
+        long count = count();
+        long avg = count == 0 ? 0 : totalNanos() / count;
+        return "count=" + count
+            + " avg=" + micros(avg)
+            + " p50=" + micros(percentileNanos(0.50))
+            + " p99=" + micros(percentileNanos(0.99))
+            + " max=" + micros(maxNanos());
+    }
+
+    private static String micros(long nanos) {
+        return (nanos / 1_000L) + "us";
+    }
+}
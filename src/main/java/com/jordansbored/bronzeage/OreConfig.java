@@ -0,0 +1,222 @@
+package com.jordansbored.bronzeage;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Ore generation settings from {@code config.properties} in the plugin data
+ * directory.
+ *
+ * Every ore of {@link OreDefinition#ALL} can be tuned with keys prefixed by
+ * its name, e.g. {@code tin.maxY=70}; missing keys keep the defaults. The file
+ * is validated as a whole and turned into new immutable definitions, so a bad
+ * edit is reported and leaves the running settings untouched. The set of ores
+ * and their blocks are fixed, which keeps ore indices stable for
+ * {@link PendingPlacements}.
+ */
+final class OreConfig {
+
+    static final String FILE_NAME = "config.properties";
+
+    // Vein sizes are stored in 4 bits (see VeinLocator)
+    static final int MAX_VEIN_SIZE = 15;
+    static final int MAX_VEINS_PER_CHUNK = 32;
+
+    private static final String[] KEYS = {
+        "enabled", "minY", "maxY", "yBias", "veinsPerChunk", "minVeinSize", "maxVeinSize", "spawnChance", "hostRocks", "native"
+    };
+
+    private OreConfig() {
+    }
+
+    /**
+     * Reads the definitions configured in {@code file}, writing a file with
+     * the defaults first if there is none.
+     * @return one definition per entry of {@code defaults}, in the same order
+     * @throws IOException if the file cannot be read or written
+     * @throws IllegalArgumentException listing every invalid setting
+     */
+    static List<OreDefinition> load(Path file, List<OreDefinition> defaults) throws IOException {
+        if (!Files.exists(file)) {
+            writeDefaults(file, defaults);
+            return defaults;
+        }
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        return parse(properties, defaults);
+    }
+
+    static List<OreDefinition> parse(Properties properties, List<OreDefinition> defaults) {
+        List<String> errors = new ArrayList<>();
+        Set<String> known = new HashSet<>();
+        List<OreDefinition> ores = new ArrayList<>();
+        for (OreDefinition def : defaults) {
+            for (String key : KEYS) {
+                known.add(def.name + "." + key);
+            }
+            Settings s = new Settings(properties, def.name + ".", errors);
+            boolean enabled = s.bool("enabled", def.enabled);
+            int minY = s.integer("minY", def.minY, VeinRasterizer.MIN_BLOCK_Y, VeinRasterizer.MAX_BLOCK_Y - 1);
+            int maxY = s.integer("maxY", def.maxY, VeinRasterizer.MIN_BLOCK_Y + 1, VeinRasterizer.MAX_BLOCK_Y);
+            double yBias = s.decimal("yBias", def.yBias, 0.1, 10.0);
+            int veinsPerChunk = s.integer("veinsPerChunk", def.veinsPerChunk, 0, MAX_VEINS_PER_CHUNK);
+            int minVeinSize = s.integer("minVeinSize", def.minVeinSize, 1, MAX_VEIN_SIZE);
+            int maxVeinSize = s.integer("maxVeinSize", def.maxVeinSize, 1, MAX_VEIN_SIZE);
+            double spawnChance = s.decimal("spawnChance", def.spawnChance, 0.0, 1.0);
+            String[] base = s.names("hostRocks", def.hostRocks.base);
+            boolean nativeGeneration = s.bool("native", def.nativeGeneration);
+            if (minY >= maxY) {
+                errors.add(def.name + ".minY must be below " + def.name + ".maxY");
+            }
+            if (minVeinSize > maxVeinSize) {
+                errors.add(def.name + ".minVeinSize must not exceed " + def.name + ".maxVeinSize");
+            }
+            if (!errors.isEmpty()) {
+                continue;
+            }
+            HostRocks hostRocks = base == def.hostRocks.base
+                ? def.hostRocks
+                : new HostRocks(base, def.hostRocks.byBiome, def.hostRocks.fallback);
+            ores.add(new OreDefinition(def.name, def.block, minY, maxY, veinsPerChunk, minVeinSize, maxVeinSize,
+                spawnChance, yBias, hostRocks, enabled, nativeGeneration));
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (!known.contains(key)) {
+                errors.add("unknown setting " + key);
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException(String.join("; ", errors));
+        }
+        return List.copyOf(ores);
+    }
+
+    /**
+     * Writes {@code defaults} to {@code file} as a commented properties file.
+     */
+    static void writeDefaults(Path file, List<OreDefinition> defaults) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            out.write("# Bronze Age ore generation. Apply changes with /bronzeage reload.\n");
+            out.write("# minY/maxY: vein center range (" + VeinRasterizer.MIN_BLOCK_Y + "-" + VeinRasterizer.MAX_BLOCK_Y + ")\n");
+            out.write("# yBias: skew towards minY (1 = uniform, higher = deeper)\n");
+            out.write("# veinsPerChunk: veins in a chunk that gets the ore (0-1 more are added)\n");
+            out.write("# minVeinSize/maxVeinSize: 1-" + MAX_VEIN_SIZE + "\n");
+            out.write("# spawnChance: chance per chunk to get any of the ore (0-1)\n");
+            out.write("# hostRocks: comma-separated blocks the ore may replace, on top of the biome-specific ones\n");
+            out.write("# native: true leaves new chunks in biomes with generated HytaleGenerator assignments to the world generator\n");
+            for (OreDefinition def : defaults) {
+                out.write("\n# " + def.block + "\n");
+                out.write(def.name + ".enabled=" + def.enabled + "\n");
+                out.write(def.name + ".minY=" + def.minY + "\n");
+                out.write(def.name + ".maxY=" + def.maxY + "\n");
+                out.write(def.name + ".yBias=" + def.yBias + "\n");
+                out.write(def.name + ".veinsPerChunk=" + def.veinsPerChunk + "\n");
+                out.write(def.name + ".minVeinSize=" + def.minVeinSize + "\n");
+                out.write(def.name + ".maxVeinSize=" + def.maxVeinSize + "\n");
+                out.write(def.name + ".spawnChance=" + def.spawnChance + "\n");
+                out.write(def.name + ".hostRocks=" + String.join(",", def.hostRocks.base) + "\n");
+                if (!def.nativeBiomes().isEmpty()) {
+                    out.write("# native assignments exist for " + String.join(", ", def.nativeBiomes()) + "\n");
+                }
+                out.write(def.name + ".native=" + def.nativeGeneration + "\n");
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Typed reads of one ore's keys, collecting errors instead of throwing. */
+    private static final class Settings {
+        private final Properties properties;
+        private final String prefix;
+        private final List<String> errors;
+
+        Settings(Properties properties, String prefix, List<String> errors) {
+            this.properties = properties;
+            this.prefix = prefix;
+            this.errors = errors;
+        }
+
+        private String raw(String key) {
+            String value = properties.getProperty(prefix + key);
+            return value == null ? null : value.trim();
+        }
+
+        boolean bool(String key, boolean fallback) {
+            String value = raw(key);
+            if (value == null) {
+                return fallback;
+            }
+            if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+                errors.add(prefix + key + " must be true or false, was '" + value + "'");
+                return fallback;
+            }
+            return Boolean.parseBoolean(value);
+        }
+
+        int integer(String key, int fallback, int min, int max) {
+            String value = raw(key);
+            if (value == null) {
+                return fallback;
+            }
+            try {
+                int parsed = Integer.parseInt(value);
+                if (parsed >= min && parsed <= max) {
+                    return parsed;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            errors.add(prefix + key + " must be a whole number from " + min + " to " + max + ", was '" + value + "'");
+            return fallback;
+        }
+
+        double decimal(String key, double fallback, double min, double max) {
+            String value = raw(key);
+            if (value == null) {
+                return fallback;
+            }
+            try {
+                double parsed = Double.parseDouble(value);
+                if (parsed >= min && parsed <= max) {
+                    return parsed;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            errors.add(prefix + key + " must be a number from " + min + " to " + max + ", was '" + value + "'");
+            return fallback;
+        }
+
+        String[] names(String key, String[] fallback) {
+            String value = raw(key);
+            if (value == null) {
+                return fallback;
+            }
+            List<String> names = new ArrayList<>();
+            for (String name : value.split(",")) {
+                if (!name.trim().isEmpty()) {
+                    names.add(name.trim());
+                }
+            }
+            if (names.isEmpty()) {
+                errors.add(prefix + key + " must list at least one block");
+                return fallback;
+            }
+            return names.toArray(new String[0]);
+        }
+    }
+}
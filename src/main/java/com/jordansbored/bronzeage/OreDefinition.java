@@ -0,0 +1,93 @@
+package com.jordansbored.bronzeage;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generation settings for one ore: block, Y range and skew, veins per chunk,
+ * vein size, spawn chance and host rocks.
+ *
+ * Every definition in {@link #ALL} is planned and applied by the same engine,
+ * so all ores for a chunk are generated in one task with one chunk fetch.
+ * These are the defaults; {@link OreConfig} derives the definitions actually
+ * used from them. Immutable.
+ */
+final class OreDefinition {
+
+    // Tin ore generation settings (rarer than coal, deeper range)
+    static final OreDefinition TIN = new OreDefinition(
+        "tin", "Ore_Tin_Stone", 10, 70, 7, 3, 7, 0.9, HostRocks.TIN);
+
+    // Coal settings from the standalone CoalOrePlugin, which steps aside when this engine runs
+    static final OreDefinition COAL = new OreDefinition(
+        "coal", "Ore_Coal_Stone", 10, 90, 5, 3, 7, 0.9, HostRocks.COAL);
+
+    /** Ores generated in new chunks, in placement order. */
+    static final List<OreDefinition> ALL = List.of(TIN, COAL);
+
+    // Exponent of the Y skew: higher values put more veins near minY
+    static final double DEFAULT_Y_BIAS = 1.5;
+
+    final String name;
+    final String block;
+    final int minY;
+    final int maxY;
+    final int veinsPerChunk;  // 0-1 more veins are added per chunk
+    final int minVeinSize;
+    final int maxVeinSize;
+    final double spawnChance; // chance per chunk to get any veins
+    final double yBias;
+    final HostRocks hostRocks;
+    final boolean enabled;
+    // Left to the generated HytaleGenerator assignments in the biomes they cover
+    final boolean nativeGeneration;
+    // Vein center heights, precomputed from minY, maxY and yBias
+    final YDistribution yDistribution;
+    // Salt for the per-chunk seed, so ores sharing a chunk get independent streams
+    final int seedId;
+
+    OreDefinition(String name, String block, int minY, int maxY, int veinsPerChunk,
+                  int minVeinSize, int maxVeinSize, double spawnChance, HostRocks hostRocks) {
+        this(name, block, minY, maxY, veinsPerChunk, minVeinSize, maxVeinSize, spawnChance, DEFAULT_Y_BIAS, hostRocks, true, false);
+    }
+
+    OreDefinition(String name, String block, int minY, int maxY, int veinsPerChunk,
+                  int minVeinSize, int maxVeinSize, double spawnChance, double yBias, HostRocks hostRocks,
+                  boolean enabled, boolean nativeGeneration) {
+        this.name = name;
+        this.block = block;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.veinsPerChunk = veinsPerChunk;
+        this.minVeinSize = minVeinSize;
+        this.maxVeinSize = maxVeinSize;
+        this.spawnChance = spawnChance;
+        this.yBias = yBias;
+        this.hostRocks = hostRocks;
+        this.enabled = enabled;
+        this.nativeGeneration = nativeGeneration;
+        this.seedId = OreRandom.oreId(block);
+        this.yDistribution = new YDistribution(minY, maxY, yBias);
+    }
+
+    /**
+     * @return biomes {@link GeneratorAssignments} writes native assignments
+     *         for: the ones with biome-specific host rocks
+     */
+    Set<String> nativeBiomes() {
+        return hostRocks.byBiome.keySet();
+    }
+
+    /**
+     * @return every biome key that has biome-specific host rocks in {@code ores}
+     */
+    static Set<String> biomes(List<OreDefinition> ores) {
+        Set<String> biomes = new LinkedHashSet<>();
+        for (OreDefinition ore : ores) {
+            biomes.addAll(ore.hostRocks.byBiome.keySet());
+        }
+        return Collections.unmodifiableSet(biomes);
+    }
+}
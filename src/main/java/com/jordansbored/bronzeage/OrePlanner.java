@@ -0,0 +1,200 @@
+package com.jordansbored.bronzeage;
+
+import java.util.Arrays;
+
+/**
+ * Computes ore placement plans for newly generated chunks.
+ *
+ * Planning only depends on the world seed and chunk coordinates, and every
+ * vein draws from its own {@link OreRandom} stream, so it is safe to run on
+ * any thread and in any order. It never touches the world; the resulting {@link ChunkOrePlan} lists
+ * every distinct candidate block of every ore and is applied later on the world thread.
+ * Blocks of veins that cross the chunk edge are kept as spills for the
+ * neighbouring chunks instead of being clipped away.
+ * Instances keep scratch buffers and must not be shared between threads.
+ */
+final class OrePlanner {
+
+    private final VeinRasterizer rasterizer = new VeinRasterizer();
+    private final OreRandom chunkRand = new OreRandom(0L);
+    private final OreRandom veinRand = new OreRandom(0L);
+    private int[] blocks = new int[512];
+    private int blockCount;
+    private int[] veins = new int[ChunkOrePlan.VEIN_STRIDE * 16];
+    private int veinCount;
+    private int[] spills = new int[256];
+    private int spillCount;
+    private int skippedVeins;
+    // Seed of the chunk last passed to rollVeinCount, and the vein last rolled by rollVein
+    private long chunkSeed;
+    private int veinX;
+    private int veinY;
+    private int veinZ;
+    private int veinSize;
+
+    /**
+     * Builds the plan for a chunk, covering every ore in {@code tables}.
+     * @return the plan, or null if this chunk gets no ore
+     */
+    ChunkOrePlan planChunk(long worldSeed, int chunkCoordX, int chunkCoordZ, OreTables tables) {
+        return planChunk(worldSeed, chunkCoordX, chunkCoordZ, tables, null);
+    }
+
+    /**
+     * Builds the plan for a chunk, leaving out veins that {@code occupancy}
+     * shows cannot place anything. Skipping a vein does not change the others,
+     * since each vein draws from its own stream.
+     * @param occupancy host rock summary of the chunk, or null to plan every vein
+     * @return the plan, or null if this chunk gets no ore
+     */
+    ChunkOrePlan planChunk(long worldSeed, int chunkCoordX, int chunkCoordZ, OreTables tables, SectionOccupancy occupancy) {
+        blockCount = 0;
+        veinCount = 0;
+        spillCount = 0;
+        skippedVeins = 0;
+        for (int ore = 0; ore < tables.ores.length; ore++) {
+            if (!tables.available(ore)) {
+                continue;
+            }
+            planOre(worldSeed, chunkCoordX, chunkCoordZ, tables.ores[ore], ore, occupancy);
+        }
+        if (veinCount == 0) {
+            return null;
+        }
+
+        return new ChunkOrePlan(chunkCoordX, chunkCoordZ, tables,
+            Arrays.copyOf(blocks, blockCount),
+            Arrays.copyOf(veins, veinCount * ChunkOrePlan.VEIN_STRIDE),
+            sortedSpills());
+    }
+
+    /**
+     * @return veins the last {@link #planChunk} left out because they had no host rock
+     */
+    int skippedVeins() {
+        return skippedVeins;
+    }
+
+    private void planOre(long worldSeed, int chunkCoordX, int chunkCoordZ, OreDefinition def, int ore, SectionOccupancy occupancy) {
+        int numVeins = rollVeinCount(worldSeed, chunkCoordX, chunkCoordZ, def);
+        for (int i = 0; i < numVeins; i++) {
+            rollVein(def, chunkCoordX, chunkCoordZ, i);
+            if (occupancy != null && !occupancy.mayHost(ore, veinX, veinY, veinZ)) {
+                skippedVeins++;
+                continue;
+            }
+            // The vein stream continues into the rasterizer
+            planVein(chunkCoordX, chunkCoordZ, veinX, veinY, veinZ, veinSize, ore, veinRand);
+        }
+    }
+
+    /**
+     * Computes where the veins of one ore go in a chunk, without rasterizing
+     * them. The centers and sizes are exactly those {@link #planChunk} uses.
+     * @param out receives x, y, z and size of each vein; needs room for
+     *            {@code 4 * (def.veinsPerChunk + 1)} ints
+     * @return number of veins
+     */
+    int predictVeins(long worldSeed, int chunkCoordX, int chunkCoordZ, OreDefinition def, int[] out) {
+        int numVeins = rollVeinCount(worldSeed, chunkCoordX, chunkCoordZ, def);
+        for (int i = 0; i < numVeins; i++) {
+            rollVein(def, chunkCoordX, chunkCoordZ, i);
+            out[i * 4] = veinX;
+            out[i * 4 + 1] = veinY;
+            out[i * 4 + 2] = veinZ;
+            out[i * 4 + 3] = veinSize;
+        }
+        return numVeins;
+    }
+
+    /**
+     * @return number of veins of the ore in the chunk, 0 if it gets none
+     */
+    private int rollVeinCount(long worldSeed, int chunkCoordX, int chunkCoordZ, OreDefinition def) {
+        // Seed from the world, ore and chunk so generation is deterministic per world
+        chunkSeed = OreRandom.chunkSeed(worldSeed, def.seedId, chunkCoordX, chunkCoordZ);
+        chunkRand.reset(chunkSeed);
+
+        // Chance for this chunk to have any of this ore at all
+        if (chunkRand.nextDouble() > def.spawnChance) {
+            return 0;
+        }
+
+        return def.veinsPerChunk + chunkRand.nextInt(2);
+    }
+
+    /**
+     * Draws the center and size of vein {@code i} of the current chunk.
+     */
+    private void rollVein(OreDefinition def, int chunkCoordX, int chunkCoordZ, int i) {
+        // Each vein has its own stream, independent of the veins before it
+        OreRandom rand = veinRand;
+        rand.reset(OreRandom.veinSeed(chunkSeed, i));
+
+        veinX = (chunkCoordX << 5) + rand.nextInt(32);  // chunk size is 32
+        veinZ = (chunkCoordZ << 5) + rand.nextInt(32);
+
+        // Skewed towards minY, from a precomputed table instead of Math.pow
+        veinY = def.yDistribution.sample(rand.nextDouble());
+
+        veinSize = def.minVeinSize + rand.nextInt(def.maxVeinSize - def.minVeinSize + 1);
+    }
+
+    private int[] sortedSpills() {
+        if (spillCount == 0) {
+            return new int[0];
+        }
+        int[] sorted = Arrays.copyOf(spills, spillCount);
+        // The neighbour code sits in the high bits, so sorting groups spills by chunk
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Records the distinct candidate blocks of one vein, splitting off the
+     * blocks that fall into neighbouring chunks.
+     */
+    private void planVein(int chunkCoordX, int chunkCoordZ, int centerX, int centerY, int centerZ, int size, int ore, OreRandom rand) {
+        rasterizer.rasterize(centerX, centerY, centerZ, size, rand);
+
+        int count = rasterizer.clipY();
+
+        if (blockCount + count > blocks.length) {
+            blocks = Arrays.copyOf(blocks, Math.max(blocks.length * 2, blockCount + count));
+        }
+        if (spillCount + count > spills.length) {
+            spills = Arrays.copyOf(spills, Math.max(spills.length * 2, spillCount + count));
+        }
+        for (int w = 0; w < VeinRasterizer.words(); w++) {
+            long bits = rasterizer.word(w);
+            if (bits == 0L) {
+                continue;
+            }
+            int blockX = rasterizer.blockX(w);
+            int dx = (blockX >> 5) - chunkCoordX;
+            while (bits != 0L) {
+                int bit = Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int blockZ = rasterizer.blockZ(bit);
+                int dz = (blockZ >> 5) - chunkCoordZ;
+                int packed = ChunkOrePlan.pack(blockX & 31, rasterizer.blockY(bit), blockZ & 31);
+                if ((dx | dz) == 0) {
+                    blocks[blockCount++] = packed;
+                } else {
+                    spills[spillCount++] = ChunkOrePlan.spill(dx, dz, PendingPlacements.entry(ore, packed));
+                }
+            }
+        }
+
+        if ((veinCount + 1) * ChunkOrePlan.VEIN_STRIDE > veins.length) {
+            veins = Arrays.copyOf(veins, veins.length * 2);
+        }
+        int v = veinCount++ * ChunkOrePlan.VEIN_STRIDE;
+        veins[v] = blockCount;
+        veins[v + 1] = centerX;
+        veins[v + 2] = centerY;
+        veins[v + 3] = centerZ;
+        veins[v + 4] = size;
+        veins[v + 5] = ore;
+    }
+}
@@ -0,0 +1,75 @@
+package com.jordansbored.bronzeage;
+
+/**
+ * Small SplitMix64 generator used for ore generation.
+ *
+ * Seeds are derived by hashing the world seed, ore, chunk and vein index
+ * together, so every vein has its own stream that can be computed on any
+ * thread, in any order, with the same result. A generator can be
+ * {@link #reset} to a new seed, so planners reuse one instance instead of
+ * allocating per vein. Not thread-safe.
+ */
+final class OreRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    OreRandom(long seed) {
+        this.state = seed;
+    }
+
+    void reset(long seed) {
+        state = seed;
+    }
+
+    long nextLong() {
+        return mix(state += GOLDEN_GAMMA);
+    }
+
+    /** @return uniform value in [0, bound) */
+    int nextInt(int bound) {
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    /** @return uniform value in [0, 1) */
+    double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /** @return uniform value in [0, 1) */
+    float nextFloat() {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    /**
+     * @return the seed for an ore's chunk-level decisions (spawn roll, vein count)
+     */
+    static long chunkSeed(long worldSeed, int oreId, int chunkX, int chunkZ) {
+        long h = mix(worldSeed ^ GOLDEN_GAMMA);
+        h = mix(h ^ oreId);
+        h = mix(h ^ chunkX);
+        return mix(h ^ ((long) chunkZ << 32));
+    }
+
+    /**
+     * @return the seed for vein {@code veinIndex} of a chunk
+     */
+    static long veinSeed(long chunkSeed, int veinIndex) {
+        return mix(chunkSeed + (veinIndex + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * @return a stable id for an ore, independent of block asset indices
+     */
+    static int oreId(String oreBlock) {
+        return (int) mix(oreBlock.hashCode());
+    }
+
+    /** SplitMix64 finalizer. */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,305 @@
+package com.jordansbored.bronzeage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+import com.hypixel.hytale.server.core.universe.world.World;
+
+/**
+ * Counts ore and host rock blocks in loaded chunks, per Y band and biome,
+ * for {@code /bronzeage survey}.
+ *
+ * The world thread only copies block ids out of the chunks, one 32-block-high
+ * section at a time into a small pool of reused buffers, within a time budget
+ * per tick; worker threads count the copies with a {@link BlockCounter} and
+ * merge the totals. Only the heights the ores can reach are copied. When the
+ * pool is empty the world thread waits for a worker to hand a buffer back, so
+ * memory stays bounded however many chunks are surveyed.
+ */
+final class OreSurvey extends BudgetedWorldTask {
+
+    static final long BUDGET_NANOS = 2_000_000L;
+    static final int BAND_HEIGHT = 16;
+    private static final int SECTION_HEIGHT = 32;
+    private static final int SECTION_BLOCKS = 32 * 32 * SECTION_HEIGHT;
+    private static final int BUFFERS = 4;
+    private static final int BAR_WIDTH = 20;
+
+    final int id = GenerationJob.nextId();
+    final String description;
+    private final OreTables tables;
+    private final long[] chunks;
+    // Index into biomes of every chunk
+    private final int[] chunkBiomes;
+    private final String[] biomes;
+    private final int[] oreBlockIds;
+    // [biome][ore] -> 1 for host rock ids
+    private final int[][][] hostRocks;
+    private final int sections;
+    private final LongFunction<ChunkBlockAccess> opener;
+    private final Executor workers;
+    private final BlockCounter counter;
+    private final Consumer<OreSurvey> onFinished;
+
+    private final BlockingQueue<int[]> buffers = new ArrayBlockingQueue<>(BUFFERS);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // [biome][band] -> ore and host counts per ore, then blocks counted
+    private final long[][][] counts;
+    // Next chunk (written by the world thread only) and section to copy
+    private volatile int cursor;
+    private int section;
+    private volatile boolean finished;
+    private volatile boolean cancelled;
+    private volatile int unavailable;
+    private volatile long worldNanos;
+
+    /**
+     * @param chunks indices of the chunks to survey
+     * @param chunkBiomes biome key of every chunk, null if unknown
+     * @param opener returns the blocks of a chunk by index, or null if it is no longer loaded; world thread
+     * @param onFinished called on the world thread once the survey completes or is cancelled
+     */
+    OreSurvey(World world, ScheduledExecutorService ticker, String description, OreTables tables, long[] chunks, String[] chunkBiomes,
+              LongFunction<ChunkBlockAccess> opener, Executor workers, BlockCounter counter, Consumer<OreSurvey> onFinished) {
+        super(world, ticker);
+        this.description = description;
+        this.tables = tables;
+        this.chunks = chunks;
+        this.opener = opener;
+        this.workers = workers;
+        this.counter = counter;
+        this.onFinished = onFinished;
+
+        List<String> keys = new ArrayList<>(OreDefinition.biomes(List.of(tables.ores)));
+        keys.add(null);
+        this.biomes = keys.toArray(new String[0]);
+        this.chunkBiomes = new int[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            int b = keys.indexOf(chunkBiomes[i]);
+            this.chunkBiomes[i] = b < 0 ? biomes.length - 1 : b;
+        }
+
+        int ores = tables.ores.length;
+        int top = 0;
+        this.oreBlockIds = new int[ores];
+        for (int ore = 0; ore < ores; ore++) {
+            oreBlockIds[ore] = tables.oreBlockIds[ore];
+            if (tables.available(ore)) {
+                top = Math.max(top, Math.min(VeinRasterizer.MAX_BLOCK_Y, tables.ores[ore].maxY + VeinRasterizer.EXTENT));
+            }
+        }
+        this.sections = top / SECTION_HEIGHT + 1;
+        this.hostRocks = new int[biomes.length][ores][];
+        for (int b = 0; b < biomes.length; b++) {
+            boolean[][] rocks = tables.hostRocks(biomes[b]);
+            for (int ore = 0; ore < ores; ore++) {
+                int[] table = new int[rocks[ore].length];
+                for (int blockId = 0; blockId < table.length; blockId++) {
+                    table[blockId] = rocks[ore][blockId] ? 1 : 0;
+                }
+                hostRocks[b][ore] = table;
+            }
+        }
+        this.counts = new long[biomes.length][sections * SECTION_HEIGHT / BAND_HEIGHT][2 * ores + 1];
+        for (int i = 0; i < BUFFERS; i++) {
+            buffers.add(new int[SECTION_BLOCKS]);
+        }
+    }
+
+    @Override
+    boolean runSlice(long deadline) {
+        long start = System.nanoTime();
+        while (!cancelled && cursor < chunks.length) {
+            int[] buffer = buffers.poll();
+            if (buffer == null) {
+                break; // a worker hands one back and schedules the next slice
+            }
+            int chunk = cursor;
+            int sectionY = section;
+            if (++section == sections) {
+                section = 0;
+                cursor++;
+            }
+            // Opened per section: the shared block access is re-pointed by other work between slices
+            ChunkBlockAccess blocks = opener.apply(chunks[chunk]);
+            if (blocks == null) {
+                buffers.add(buffer);
+                if (sectionY == 0) {
+                    unavailable++;
+                }
+                continue;
+            }
+            copySection(blocks, chunks[chunk], sectionY, buffer);
+            inFlight.incrementAndGet();
+            workers.execute(() -> countSection(buffer, chunkBiomes[chunk], sectionY));
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        worldNanos += System.nanoTime() - start;
+
+        if (inFlight.get() == 0 && (cancelled || cursor >= chunks.length)) {
+            if (!finished) {
+                finished = true;
+                onFinished.accept(this);
+            }
+            return false;
+        }
+        return !cancelled && cursor < chunks.length && !buffers.isEmpty();
+    }
+
+    private static void copySection(ChunkBlockAccess blocks, long chunkIndex, int sectionY, int[] buffer) {
+        int baseX = ChunkUtil.xOfChunkIndex(chunkIndex) << 5;
+        int baseZ = ChunkUtil.zOfChunkIndex(chunkIndex) << 5;
+        int baseY = sectionY * SECTION_HEIGHT;
+        int i = 0;
+        for (int y = baseY; y < baseY + SECTION_HEIGHT; y++) {
+            for (int z = baseZ; z < baseZ + 32; z++) {
+                for (int x = baseX; x < baseX + 32; x++) {
+                    buffer[i++] = blocks.getBlock(x, y, z);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts one copied section per band and merges it. Runs on a worker thread.
+     */
+    private void countSection(int[] buffer, int biome, int sectionY) {
+        try {
+            int bandBlocks = 32 * 32 * BAND_HEIGHT;
+            int firstBand = sectionY * SECTION_HEIGHT / BAND_HEIGHT;
+            for (int b = 0; b < SECTION_HEIGHT / BAND_HEIGHT; b++) {
+                long[] band = new long[2 * oreBlockIds.length + 1];
+                counter.count(buffer, b * bandBlocks, (b + 1) * bandBlocks, oreBlockIds, hostRocks[biome], band);
+                band[band.length - 1] = bandBlocks;
+                long[] total = counts[biome][firstBand + b];
+                synchronized (counts) {
+                    for (int i = 0; i < band.length; i++) {
+                        total[i] += band[i];
+                    }
+                }
+            }
+        } finally {
+            buffers.add(buffer);
+            inFlight.decrementAndGet();
+            schedule();
+        }
+    }
+
+    @Override
+    boolean hasWork() {
+        return !finished && ((!cancelled && cursor < chunks.length && !buffers.isEmpty()) || inFlight.get() == 0);
+    }
+
+    @Override
+    long budgetNanos() {
+        return BUDGET_NANOS;
+    }
+
+    void start() {
+        schedule();
+    }
+
+    void cancel() {
+        cancelled = true;
+        schedule();
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    int totalChunks() {
+        return chunks.length;
+    }
+
+    /**
+     * @return chunks whose copying started
+     */
+    int visitedChunks() {
+        return cursor;
+    }
+
+    /**
+     * @return human readable histograms; call once the survey finished
+     */
+    List<String> report() {
+        long[][] byBand;
+        long[][] byBiome;
+        synchronized (counts) {
+            byBand = new long[counts[0].length][counts[0][0].length];
+            byBiome = new long[biomes.length][counts[0][0].length];
+            for (int b = 0; b < biomes.length; b++) {
+                for (int band = 0; band < byBand.length; band++) {
+                    for (int i = 0; i < byBand[band].length; i++) {
+                        byBand[band][i] += counts[b][band][i];
+                        byBiome[b][i] += counts[b][band][i];
+                    }
+                }
+            }
+        }
+        int ores = oreBlockIds.length;
+        int blocksSlot = 2 * ores;
+        // All chunks once finished, fewer if cancelled
+        int surveyed = cursor - unavailable;
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(Locale.ROOT, "Survey #%d: %d chunks (%d unavailable), Y 0-%d, %.1f ms on the world thread (%.2f ms/chunk), %s counter",
+            id, surveyed, unavailable, sections * SECTION_HEIGHT - 1, worldNanos / 1e6,
+            surveyed == 0 ? 0.0 : worldNanos / 1e6 / surveyed, counter.describe()));
+
+        for (int ore = 0; ore < ores; ore++) {
+            if (!tables.available(ore)) {
+                continue;
+            }
+            double max = 0;
+            for (long[] band : byBand) {
+                max = Math.max(max, perMille(band[2 * ore], band[blocksSlot]));
+            }
+            lines.add(tables.ores[ore].name + " per 1000 blocks by height (host rock share):");
+            for (int band = byBand.length - 1; band >= 0; band--) {
+                long[] c = byBand[band];
+                if (c[blocksSlot] == 0) {
+                    continue;
+                }
+                double value = perMille(c[2 * ore], c[blocksSlot]);
+                int bar = max == 0 ? 0 : (int) Math.round(value / max * BAR_WIDTH);
+                lines.add(String.format(Locale.ROOT, "  Y %3d-%3d %6.2f %-" + BAR_WIDTH + "s host %3d%%",
+                    band * BAND_HEIGHT, (band + 1) * BAND_HEIGHT - 1, value, "#".repeat(bar),
+                    c[2 * ore + 1] * 100 / c[blocksSlot]));
+            }
+        }
+
+        StringBuilder biomeLine = new StringBuilder("By biome (per 1000 blocks):");
+        for (int b = 0; b < biomes.length; b++) {
+            long[] c = byBiome[b];
+            if (c[blocksSlot] == 0) {
+                continue;
+            }
+            biomeLine.append(' ').append(biomes[b] == null ? "other" : biomes[b]).append(" [");
+            String sep = "";
+            for (int ore = 0; ore < ores; ore++) {
+                if (tables.available(ore)) {
+                    biomeLine.append(sep).append(String.format(Locale.ROOT, "%s %.2f", tables.ores[ore].name, perMille(c[2 * ore], c[blocksSlot])));
+                    sep = ", ";
+                }
+            }
+            biomeLine.append(']');
+        }
+        lines.add(biomeLine.toString());
+        return lines;
+    }
+
+    private static double perMille(long part, long whole) {
+        return whole == 0 ? 0.0 : part * 1000.0 / whole;
+    }
+}
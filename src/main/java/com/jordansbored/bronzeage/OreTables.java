@@ -0,0 +1,189 @@
+package com.jordansbored.bronzeage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Every ore definition resolved against the current block asset map, with
+ * block ids and compiled host rock tables.
+ *
+ * Ore indices are the definition's position in {@link OreDefinition#ALL}, so
+ * they stay stable across rebuilds and can be stored (see {@link PendingPlacements}).
+ * Immutable, so planners and world threads always see a consistent set; it is
+ * rebuilt as a whole when the asset map changes. Host rock tables are grouped
+ * per biome, so applying a chunk needs one lookup however many ores it has.
+ * Names that did not resolve are kept as {@link #warnings()}.
+ */
+final class OreTables {
+
+    /** Ore definitions, in {@link OreDefinition#ALL} order. */
+    final OreDefinition[] ores;
+    /** Block asset index of each ore in {@link #ores}, -1 if its block is missing or the ore is disabled. */
+    final int[] oreBlockIds;
+    /** Height {@link BiomeResolver} reads a chunk's environment at: the middle of the enabled ores' Y ranges. */
+    final int biomeSampleY;
+
+    private final boolean[][] fallback;
+    private final Map<String, boolean[][]> byBiome;
+    private final int assetCount;
+    // Biome -> these tables without the ores the world generator places there
+    private final Map<String, OreTables> postPass;
+    private final List<String> warnings;
+
+    private OreTables(OreDefinition[] ores, int[] oreBlockIds, int biomeSampleY, boolean[][] fallback, Map<String, boolean[][]> byBiome,
+                      int assetCount, Map<String, OreTables> postPass, List<String> warnings) {
+        this.ores = ores;
+        this.oreBlockIds = oreBlockIds;
+        this.biomeSampleY = biomeSampleY;
+        this.fallback = fallback;
+        this.byBiome = byBiome;
+        this.assetCount = assetCount;
+        this.postPass = postPass;
+        this.warnings = warnings;
+    }
+
+    /**
+     * Resolves ore and host rock names through {@code indexOf}. Ores that are
+     * disabled or whose block does not resolve are kept but never generated;
+     * host rocks that do not resolve are left out.
+     */
+    static OreTables compile(List<OreDefinition> ores, ToIntFunction<String> indexOf, int assetCount) {
+        List<HostRockTable> tables = new ArrayList<>();
+        int[] oreBlockIds = new int[ores.size()];
+        boolean[][] fallback = new boolean[ores.size()][];
+        List<String> warnings = new ArrayList<>();
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < oreBlockIds.length; i++) {
+            OreDefinition ore = ores.get(i);
+            Set<String> unknownRocks = new LinkedHashSet<>();
+            tables.add(HostRockTable.compile(ore.hostRocks, indexOf, assetCount, unknownRocks));
+            oreBlockIds[i] = ore.enabled ? Math.max(-1, indexOf.applyAsInt(ore.block)) : -1;
+            fallback[i] = tables.get(i).forBiome(null);
+            if (!ore.enabled) {
+                continue;
+            }
+            if (oreBlockIds[i] < 0) {
+                warnings.add(ore.name + " ore block type '" + ore.block + "' not found! Natural generation of it disabled.");
+            }
+            for (String rock : unknownRocks) {
+                warnings.add(ore.name + " host rock '" + rock + "' not found! " + ore.name + " ore will not replace it.");
+            }
+            minY = Math.min(minY, ore.minY);
+            maxY = Math.max(maxY, ore.maxY);
+        }
+        // With no ore enabled the height does not matter; keep it inside the default range
+        int biomeSampleY = minY <= maxY ? (minY + maxY) / 2 : (OreDefinition.TIN.minY + OreDefinition.TIN.maxY) / 2;
+
+        Map<String, boolean[][]> byBiome = new HashMap<>();
+        for (String biome : OreDefinition.biomes(ores)) {
+            boolean[][] perOre = new boolean[ores.size()][];
+            for (int i = 0; i < perOre.length; i++) {
+                perOre[i] = tables.get(i).forBiome(biome);
+            }
+            byBiome.put(biome, perOre);
+        }
+
+        // Same tables with natively generated ores marked unavailable, per biome they cover
+        OreDefinition[] defs = ores.toArray(new OreDefinition[0]);
+        Map<String, OreTables> postPass = new HashMap<>();
+        for (String biome : OreDefinition.biomes(ores)) {
+            int[] ids = oreBlockIds.clone();
+            boolean leftOut = false;
+            for (int i = 0; i < ids.length; i++) {
+                if (defs[i].nativeGeneration && defs[i].nativeBiomes().contains(biome) && ids[i] >= 0) {
+                    ids[i] = -1;
+                    leftOut = true;
+                }
+            }
+            if (leftOut) {
+                postPass.put(biome, new OreTables(defs, ids, biomeSampleY, fallback, byBiome, assetCount, Map.of(), List.of()));
+            }
+        }
+        return new OreTables(defs, oreBlockIds, biomeSampleY, fallback, byBiome, assetCount, postPass, List.copyOf(warnings));
+    }
+
+    /**
+     * @param biome biome key, or null if unknown
+     * @return the ores the plugin generates itself in new chunks of that
+     *         biome: these tables without ores set to native generation there
+     */
+    OreTables postPass(String biome) {
+        OreTables tables = biome != null ? postPass.get(biome) : null;
+        return tables != null ? tables : this;
+    }
+
+    /**
+     * @param biome biome key, or null if unknown
+     * @return host rock table of every ore in {@link #ores}, for chunks in that biome
+     */
+    boolean[][] hostRocks(String biome) {
+        boolean[][] tables = biome != null ? byBiome.get(biome) : null;
+        return tables != null ? tables : fallback;
+    }
+
+    /**
+     * @return true if the block of ore {@code ore} exists and it can be generated
+     */
+    boolean available(int ore) {
+        return oreBlockIds[ore] >= 0;
+    }
+
+    /**
+     * @return true if at least one ore can be generated
+     */
+    boolean anyAvailable() {
+        for (int ore = 0; ore < ores.length; ore++) {
+            if (available(ore)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param ore an ore of {@link OreDefinition#ALL}, or one configured from it
+     * @return index of {@code ore} in {@link #ores}, or -1 if it cannot be generated
+     */
+    int indexOf(OreDefinition ore) {
+        for (int i = 0; i < ores.length; i++) {
+            if (ores[i].name.equals(ore.name)) {
+                return available(i) ? i : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return ore blocks and host rocks of enabled ores that are not in the
+     *         asset map, one message each
+     */
+    List<String> warnings() {
+        return warnings;
+    }
+
+    /**
+     * @return the block asset count the tables were built for
+     */
+    int assetCount() {
+        return assetCount;
+    }
+
+    /**
+     * @return blocks of the ores that can be generated
+     */
+    Set<String> blocks() {
+        Set<String> blocks = new LinkedHashSet<>();
+        for (int ore = 0; ore < ores.length; ore++) {
+            if (available(ore)) {
+                blocks.add(ores[ore].block);
+            }
+        }
+        return blocks;
+    }
+}
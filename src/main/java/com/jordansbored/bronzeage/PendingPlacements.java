@@ -0,0 +1,350 @@
+package com.jordansbored.bronzeage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ore blocks planned for a chunk other than the one being generated, kept
+ * until that chunk is in memory.
+ *
+ * Veins near a chunk edge spill into the neighbouring chunks. Instead of
+ * dropping those blocks, they are stored here under the neighbour's chunk
+ * index and applied when the neighbour is generated or loaded, or right away
+ * if it is already in memory. Each block is one packed int:
+ * <pre>
+ *   [ ore:8 | y:9 | localZ:5 | localX:5 ]
+ * </pre>
+ * The store holds at most {@link #MAX_ENTRIES} blocks per world; when it is
+ * full, the chunks touched least recently are evicted first. It is saved to a
+ * small binary file so pending blocks survive restarts. Thread-safe.
+ *
+ * Chunks are nodes in parallel primitive arrays, found through an
+ * open-addressing table of node numbers keyed by the {@code long} chunk index
+ * and linked in access order for eviction, so storing a chunk allocates no
+ * boxed key, map entry or wrapper, only its entry array.
+ */
+final class PendingPlacements {
+
+    static final int ORE_SHIFT = 19;
+    private static final int LOCAL_MASK = (1 << ORE_SHIFT) - 1;
+    // 4 MiB of packed entries per world
+    static final int MAX_ENTRIES = 1 << 20;
+
+    private static final int MAGIC = 0x42415050; // "BAPP"
+    private static final int VERSION = 1;
+
+    private static final int NIL = -1;
+    private static final int INITIAL_NODES = 64;
+    private static final int INITIAL_ENTRIES = 16;
+
+    // Per chunk node: chunk index, packed entries and their count
+    private long[] keys = new long[INITIAL_NODES];
+    private int[][] data = new int[INITIAL_NODES][];
+    private int[] counts = new int[INITIAL_NODES];
+    // Access order links, from the chunk touched least recently (head) to the most recent (tail)
+    private int[] prev = new int[INITIAL_NODES];
+    private int[] next = new int[INITIAL_NODES];
+    private int head = NIL;
+    private int tail = NIL;
+    // Removed nodes, linked through next, and nodes ever used
+    private int free = NIL;
+    private int used;
+    // Node + 1 by hashed chunk index, 0 for empty slots; linear probing, at most half full
+    private int[] table = new int[2 * INITIAL_NODES];
+    private int chunkCount;
+    private int size;
+    // Serializes saves, which share the temporary file, without holding the store's lock
+    private final Object saveLock = new Object();
+
+    static int entry(int ore, int packedLocal) {
+        return (ore << ORE_SHIFT) | packedLocal;
+    }
+
+    static int ore(int entry) {
+        return entry >>> ORE_SHIFT;
+    }
+
+    /**
+     * @return chunk-local position of the entry, packed as by {@link ChunkOrePlan#pack}
+     */
+    static int local(int entry) {
+        return entry & LOCAL_MASK;
+    }
+
+    /**
+     * Records blocks for a chunk.
+     * @return number of blocks evicted to stay within {@link #MAX_ENTRIES}
+     */
+    synchronized int addAll(long chunkIndex, int[] entries, int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+        int slot = slotOf(chunkIndex);
+        int node = table[slot] - 1;
+        if (node < 0) {
+            node = newNode(chunkIndex);
+            table[slot] = node + 1;
+            chunkCount++;
+        } else {
+            unlink(node);
+        }
+        append(node);
+        if (chunkCount * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+
+        int count = counts[node];
+        int[] chunk = data[node];
+        int needed = count + to - from;
+        if (needed > chunk.length) {
+            chunk = data[node] = Arrays.copyOf(chunk, Math.max(needed, chunk.length * 2));
+        }
+        System.arraycopy(entries, from, chunk, count, to - from);
+        counts[node] = needed;
+        size += to - from;
+        return evictOverflow();
+    }
+
+    /**
+     * Removes and returns the blocks recorded for a chunk.
+     * @return the packed entries, or null if there are none
+     */
+    synchronized int[] take(long chunkIndex) {
+        if (size == 0) {
+            return null;
+        }
+        int slot = slotOf(chunkIndex);
+        int node = table[slot] - 1;
+        if (node < 0) {
+            return null;
+        }
+        int[] entries = Arrays.copyOf(data[node], counts[node]);
+        remove(slot, node);
+        return entries;
+    }
+
+    /**
+     * @return number of blocks waiting for their chunk
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    private int evictOverflow() {
+        int evicted = 0;
+        while (size > MAX_ENTRIES && head != NIL) {
+            int eldest = head;
+            evicted += counts[eldest];
+            remove(slotOf(keys[eldest]), eldest);
+        }
+        return evicted;
+    }
+
+    private static int hash(long chunkIndex) {
+        return (int) ((chunkIndex * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    /**
+     * @return the table slot holding {@code chunkIndex}, or the empty slot it would go in
+     */
+    private int slotOf(long chunkIndex) {
+        int mask = table.length - 1;
+        int slot = hash(chunkIndex) & mask;
+        while (table[slot] != 0 && keys[table[slot] - 1] != chunkIndex) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int node = head; node != NIL; node = next[node]) {
+            int slot = hash(keys[node]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = node + 1;
+        }
+    }
+
+    private int newNode(long chunkIndex) {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = next[node];
+        } else {
+            if (used == keys.length) {
+                int capacity = used * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                data = Arrays.copyOf(data, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                prev = Arrays.copyOf(prev, capacity);
+                next = Arrays.copyOf(next, capacity);
+            }
+            node = used++;
+        }
+        keys[node] = chunkIndex;
+        data[node] = new int[INITIAL_ENTRIES];
+        counts[node] = 0;
+        return node;
+    }
+
+    /**
+     * Drops a chunk: empties its slot, shifting back the entries probed past
+     * it, and frees its node.
+     */
+    private void remove(int slot, int node) {
+        int mask = table.length - 1;
+        int hole = slot;
+        for (int i = (hole + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int home = hash(keys[table[i] - 1]) & mask;
+            // Move the entry into the hole unless its home slot lies cyclically in (hole, i]
+            boolean stays = hole <= i ? home > hole && home <= i : home > hole || home <= i;
+            if (!stays) {
+                table[hole] = table[i];
+                hole = i;
+            }
+        }
+        table[hole] = 0;
+        chunkCount--;
+
+        unlink(node);
+        size -= counts[node];
+        data[node] = null;
+        counts[node] = 0;
+        next[node] = free;
+        free = node;
+    }
+
+    /** Links a node as the most recently touched chunk. */
+    private void append(int node) {
+        prev[node] = tail;
+        next[node] = NIL;
+        if (tail == NIL) {
+            head = node;
+        } else {
+            next[tail] = node;
+        }
+        tail = node;
+    }
+
+    private void unlink(int node) {
+        int before = prev[node];
+        int after = next[node];
+        if (before == NIL) {
+            head = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == NIL) {
+            tail = before;
+        } else {
+            prev[after] = before;
+        }
+    }
+
+    /**
+     * Writes the store to {@code file}, replacing it atomically. Ore indices
+     * are saved with the ore blocks so they can be remapped on load. The
+     * store is copied under its lock and written without it, so planner and
+     * world threads are not held up by the file I/O.
+     */
+    void save(Path file, List<OreDefinition> ores) throws IOException {
+        // Least recently touched first, so loading restores the eviction order
+        long[] savedKeys;
+        int[] savedCounts;
+        int[] savedEntries;
+        synchronized (this) {
+            savedKeys = new long[chunkCount];
+            savedCounts = new int[chunkCount];
+            savedEntries = new int[size];
+            int n = 0;
+            int offset = 0;
+            for (int node = head; node != NIL; node = next[node]) {
+                savedKeys[n] = keys[node];
+                savedCounts[n] = counts[node];
+                System.arraycopy(data[node], 0, savedEntries, offset, counts[node]);
+                offset += counts[node];
+                n++;
+            }
+        }
+        synchronized (saveLock) {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(ores.size());
+                for (OreDefinition ore : ores) {
+                    out.writeUTF(ore.block);
+                }
+                out.writeInt(savedKeys.length);
+                int offset = 0;
+                for (int n = 0; n < savedKeys.length; n++) {
+                    out.writeLong(savedKeys[n]);
+                    out.writeInt(savedCounts[n]);
+                    for (int i = 0; i < savedCounts[n]; i++) {
+                        out.writeInt(savedEntries[offset++]);
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Reads a store written by {@link #save}. Entries of ores that are no
+     * longer defined are dropped.
+     * @return the loaded store, or an empty one if {@code file} does not exist
+     */
+    static PendingPlacements load(Path file, List<OreDefinition> ores) throws IOException {
+        PendingPlacements store = new PendingPlacements();
+        if (!Files.exists(file)) {
+            return store;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a pending placement file: " + file);
+            }
+            // saved ore index -> current ore index, -1 if the ore is gone
+            int[] remap = new int[in.readInt()];
+            for (int i = 0; i < remap.length; i++) {
+                String block = in.readUTF();
+                remap[i] = -1;
+                for (int ore = 0; ore < ores.size(); ore++) {
+                    if (ores.get(ore).block.equals(block)) {
+                        remap[i] = ore;
+                    }
+                }
+            }
+            int chunkCount = in.readInt();
+            int[] buffer = new int[0];
+            for (int c = 0; c < chunkCount; c++) {
+                long chunkIndex = in.readLong();
+                int count = in.readInt();
+                if (buffer.length < count) {
+                    buffer = new int[count];
+                }
+                int kept = 0;
+                for (int i = 0; i < count; i++) {
+                    int entry = in.readInt();
+                    int ore = ore(entry);
+                    if (ore < remap.length && remap[ore] >= 0) {
+                        buffer[kept++] = entry(remap[ore], local(entry));
+                    }
+                }
+                store.addAll(chunkIndex, buffer, 0, kept);
+            }
+        }
+        return store;
+    }
+}
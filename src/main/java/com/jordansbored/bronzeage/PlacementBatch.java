@@ -0,0 +1,101 @@
+package com.jordansbored.bronzeage;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer of block placements packed into primitive longs.
+ *
+ * Each entry holds the chunk coordinates in its high bits and the chunk-local
+ * position in its low bits, so sorting the raw longs groups entries by chunk
+ * without any map or boxing:
+ * <pre>
+ *   [ chunkX:22 | chunkZ:22 | localX:5 | localZ:5 | y:9 ]
+ * </pre>
+ * The backing array only grows, so a batch reused across veins stops
+ * allocating once it has seen the largest vein. Not thread-safe.
+ */
+final class PlacementBatch {
+
+    private static final int CHUNK_BITS = 22;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+    private static final int CHUNK_Z_SHIFT = 19;
+    private static final int CHUNK_X_SHIFT = CHUNK_Z_SHIFT + CHUNK_BITS;
+
+    private long[] entries;
+    private int size;
+
+    PlacementBatch() {
+        this(1024);
+    }
+
+    PlacementBatch(int initialCapacity) {
+        this.entries = new long[initialCapacity];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(int i) {
+        return entries[i];
+    }
+
+    void add(int x, int y, int z) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        entries[size++] = pack(x, y, z);
+    }
+
+    /**
+     * Orders the entries so that all placements for a chunk are contiguous.
+     */
+    void sortByChunk() {
+        // Primitive sort on the reused array; no boxing and no per-entry garbage
+        Arrays.sort(entries, 0, size);
+    }
+
+    /**
+     * @return the index one past the last entry sharing a chunk with entry {@code start}
+     */
+    int chunkGroupEnd(int start) {
+        long chunk = entries[start] >>> CHUNK_Z_SHIFT;
+        int end = start + 1;
+        while (end < size && (entries[end] >>> CHUNK_Z_SHIFT) == chunk) {
+            end++;
+        }
+        return end;
+    }
+
+    static long pack(int x, int y, int z) {
+        return (((x >> 5) & CHUNK_MASK) << CHUNK_X_SHIFT)
+            | (((z >> 5) & CHUNK_MASK) << CHUNK_Z_SHIFT)
+            | ((long) (x & 31) << 14)
+            | ((long) (z & 31) << 9)
+            | (y & 511);
+    }
+
+    static int chunkX(long packed) {
+        return (int) (packed >>> CHUNK_X_SHIFT) << (32 - CHUNK_BITS) >> (32 - CHUNK_BITS);
+    }
+
+    static int chunkZ(long packed) {
+        return (int) ((packed >>> CHUNK_Z_SHIFT) & CHUNK_MASK) << (32 - CHUNK_BITS) >> (32 - CHUNK_BITS);
+    }
+
+    static int blockX(long packed) {
+        return (chunkX(packed) << 5) | (int) ((packed >>> 14) & 31);
+    }
+
+    static int blockZ(long packed) {
+        return (chunkZ(packed) << 5) | (int) ((packed >>> 9) & 31);
+    }
+
+    static int blockY(long packed) {
+        return (int) (packed & 511);
+    }
+}
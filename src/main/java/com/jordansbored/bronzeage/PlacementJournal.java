@@ -0,0 +1,349 @@
+package com.jordansbored.bronzeage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only record of the blocks a command job replaced, so
+ * {@code /bronzeage undo} can put them back.
+ *
+ * The job writes one batch per chunk it touches, from the world thread:
+ * <pre>
+ *   chunkX:int chunkZ:int entries:int bytes:int
+ *   entries x ( local delta:varint | previous block id:varint )
+ * </pre>
+ * Entries are sorted by their packed chunk-local position ({@link ChunkOrePlan#pack}),
+ * so positions are stored as the difference to the previous one and most
+ * entries take 2-3 bytes. Batches go to a memory-mapped temp file that grows
+ * as needed, so big jobs keep their journal off the heap; only one offset per
+ * batch stays in memory. Once {@link #seal() sealed}, {@link #restore} can be
+ * called from any thread.
+ *
+ * Only the block id is recorded: undo puts back the block type with its
+ * default rotation and no filler, which is what the host rocks ore replaces
+ * normally have, so rotated or multi-block pieces are not restored exactly.
+ *
+ * Blocks a job leaves in {@link PendingPlacements} for chunks that are not
+ * in memory are placed later, outside the job, so they are only counted
+ * ({@link #deferred}) and undo does not remove them.
+ */
+final class PlacementJournal implements Closeable {
+
+    private static final int HEADER_BYTES = 16;
+    private static final int INITIAL_BYTES = 64 << 10;
+    // Beyond this the job keeps running but stops journaling
+    static final int MAX_BYTES = 256 << 20;
+
+    /** Block the job placed; undo only restores blocks that still hold it. */
+    final int oreBlockId;
+    private final Path file;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int size;
+    private int[] batches = new int[16];
+    private int batchCount;
+    private long entries;
+    private long deferred;
+    private boolean truncated;
+
+    // Batch being recorded (world thread only)
+    private final Recorder recorder = new Recorder();
+    private long[] scratch = new long[256];
+    private int scratchSize;
+
+    // Region order keys of the journaled chunks, sorted, and the batch offsets of each; set by seal()
+    private volatile long[] chunkKeys;
+    private int[][] chunkBatches;
+
+    private PlacementJournal(Path file, FileChannel channel, int oreBlockId) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.oreBlockId = oreBlockId;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_BYTES);
+    }
+
+    /**
+     * Creates a journal in a new file under {@code dir}.
+     */
+    static PlacementJournal create(Path dir, int oreBlockId) throws IOException {
+        Files.createDirectories(dir);
+        Path file = Files.createTempFile(dir, "job-", ".journal");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new PlacementJournal(file, channel, oreBlockId);
+        } catch (IOException e) {
+            channel.close();
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a batch for one chunk. Writes through the returned access are
+     * recorded until {@link #end()}.
+     * @param chunk blocks of the chunk at {@code chunkX, chunkZ}
+     */
+    ChunkBlockAccess begin(ChunkBlockAccess chunk, int chunkX, int chunkZ) {
+        recorder.chunk = chunk;
+        recorder.chunkX = chunkX;
+        recorder.chunkZ = chunkZ;
+        scratchSize = 0;
+        return recorder;
+    }
+
+    /**
+     * Appends the batch started by {@link #begin}, if it replaced anything.
+     */
+    void end() {
+        ChunkBlockAccess chunk = recorder.chunk;
+        recorder.chunk = null;
+        if (chunk == null || scratchSize == 0 || truncated) {
+            return;
+        }
+        Arrays.sort(scratch, 0, scratchSize);
+        // Each entry takes at most 3 bytes of position and 5 of block id
+        int worstCase = HEADER_BYTES + scratchSize * 8;
+        if (!ensureCapacity(worstCase)) {
+            truncated = true;
+            return;
+        }
+        int start = size;
+        int pos = start + HEADER_BYTES;
+        int last = 0;
+        for (int i = 0; i < scratchSize; i++) {
+            int local = (int) (scratch[i] >>> 32);
+            pos = putVarint(pos, local - last);
+            pos = putVarint(pos, (int) scratch[i]);
+            last = local;
+        }
+        buffer.putInt(start, recorder.chunkX);
+        buffer.putInt(start + 4, recorder.chunkZ);
+        buffer.putInt(start + 8, scratchSize);
+        buffer.putInt(start + 12, pos - start - HEADER_BYTES);
+        size = pos;
+
+        if (batchCount == batches.length) {
+            batches = Arrays.copyOf(batches, batchCount * 2);
+        }
+        batches[batchCount++] = start;
+        entries += scratchSize;
+    }
+
+    private boolean ensureCapacity(int bytes) {
+        long needed = (long) size + bytes;
+        if (needed > MAX_BYTES) {
+            return false;
+        }
+        if (needed <= buffer.capacity()) {
+            return true;
+        }
+        long capacity = Math.min(MAX_BYTES, Math.max(needed, (long) buffer.capacity() * 2));
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private int putVarint(int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put(pos++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put(pos++, (byte) value);
+        return pos;
+    }
+
+    /**
+     * Ends recording and indexes the batches by chunk. Call on the world
+     * thread once the job finished; {@link #restore} may then be called
+     * from any thread.
+     */
+    void seal() {
+        Map<Long, int[]> byChunk = new HashMap<>();
+        for (int b = 0; b < batchCount; b++) {
+            int offset = batches[b];
+            long key = RetrogenProgress.regionOrderKey(buffer.getInt(offset), buffer.getInt(offset + 4));
+            int[] list = byChunk.get(key);
+            list = list == null ? new int[1] : Arrays.copyOf(list, list.length + 1);
+            list[list.length - 1] = offset;
+            byChunk.put(key, list);
+        }
+        long[] keys = new long[byChunk.size()];
+        int i = 0;
+        for (long key : byChunk.keySet()) {
+            keys[i++] = key;
+        }
+        Arrays.sort(keys);
+        int[][] offsets = new int[keys.length][];
+        for (i = 0; i < keys.length; i++) {
+            offsets[i] = byChunk.get(keys[i]);
+        }
+        batches = null;
+        chunkBatches = offsets;
+        chunkKeys = keys;
+    }
+
+    /**
+     * @return region order keys ({@link RetrogenProgress#regionOrderKey}) of the journaled chunks, sorted; once sealed
+     */
+    long[] chunks() {
+        return chunkKeys;
+    }
+
+    /** @return number of blocks journaled */
+    long entries() {
+        return entries;
+    }
+
+    /**
+     * Counts blocks the job left for a chunk that is not in memory. World thread.
+     */
+    void deferred(int blocks) {
+        deferred += blocks;
+    }
+
+    /** @return candidate blocks left in the pending store, which undo cannot remove */
+    long deferredEntries() {
+        return deferred;
+    }
+
+    /** @return size of the journal in bytes */
+    int bytes() {
+        return size;
+    }
+
+    /** @return true if the journal reached {@link #MAX_BYTES} and later blocks were not recorded */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Blocks to put back in one chunk, newest first so a block replaced twice
+     * ends up with its oldest id.
+     */
+    static final class Restore {
+        final int chunkX;
+        final int chunkZ;
+        // Packed chunk-local positions (ChunkOrePlan.pack) and their previous block ids
+        final int[] locals;
+        final int[] previous;
+
+        Restore(int chunkX, int chunkZ, int[] locals, int[] previous) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.locals = locals;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * Decodes every batch of a chunk. Sealed journals only; any thread.
+     * @return the chunk's blocks, or null if the job did not touch it
+     */
+    Restore restore(int chunkX, int chunkZ) {
+        int i = Arrays.binarySearch(chunkKeys, RetrogenProgress.regionOrderKey(chunkX, chunkZ));
+        if (i < 0) {
+            return null;
+        }
+        int[] offsets = chunkBatches[i];
+        MappedByteBuffer view = buffer;
+        int total = 0;
+        for (int offset : offsets) {
+            total += view.getInt(offset + 8);
+        }
+        int[] locals = new int[total];
+        int[] previous = new int[total];
+        int n = 0;
+        // Absolute reads only, so concurrent restores do not share a buffer position
+        for (int b = offsets.length - 1; b >= 0; b--) {
+            int count = view.getInt(offsets[b] + 8);
+            int pos = offsets[b] + HEADER_BYTES;
+            int local = 0;
+            for (int e = 0; e < count; e++) {
+                int value = 0;
+                int shift = 0;
+                byte in;
+                do {
+                    in = view.get(pos++);
+                    value |= (in & 0x7F) << shift;
+                    shift += 7;
+                } while (in < 0);
+                local += value;
+                value = 0;
+                shift = 0;
+                do {
+                    in = view.get(pos++);
+                    value |= (in & 0x7F) << shift;
+                    shift += 7;
+                } while (in < 0);
+                locals[n] = local;
+                previous[n] = value;
+                n++;
+            }
+        }
+        return new Restore(chunkX, chunkZ, locals, previous);
+    }
+
+    /**
+     * Closes and deletes the file; the mapping is released with the buffer.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Chunk access that forwards to the chunk of the current batch and
+     * records the previous id of every block it replaces.
+     */
+    private final class Recorder implements ChunkBlockAccess {
+        ChunkBlockAccess chunk;
+        int chunkX;
+        int chunkZ;
+
+        @Override
+        public int getBlock(int x, int y, int z) {
+            return chunk.getBlock(x, y, z);
+        }
+
+        @Override
+        public void setBlock(int x, int y, int z, int blockId) {
+            record(x, y, z, chunk.getBlock(x, y, z));
+            chunk.setBlock(x, y, z, blockId);
+        }
+
+        @Override
+        public boolean replaceHostRock(int x, int y, int z, boolean[] hostRocks, int oreBlockId) {
+            // One read for both the host check and the journal
+            int previous = chunk.getBlock(x, y, z);
+            if (!HostRockTable.isReplaceable(hostRocks, previous)) {
+                return false;
+            }
+            chunk.setBlock(x, y, z, oreBlockId);
+            record(x, y, z, previous);
+            return true;
+        }
+
+        private void record(int x, int y, int z, int previous) {
+            if (scratchSize == scratch.length) {
+                scratch = Arrays.copyOf(scratch, scratchSize * 2);
+            }
+            long local = ChunkOrePlan.pack(x & 31, y, z & 31);
+            scratch[scratchSize++] = (local << 32) | (previous & 0xFFFFFFFFL);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.jordansbored.bronzeage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Which chunks of a world already have ore, as one bitmap per 32x32-chunk
+ * region.
+ *
+ * A region is 16 longs (128 bytes), one bit per chunk, so even a world with
+ * hundreds of thousands of explored chunks fits in a few hundred kilobytes.
+ * Chunks are marked when they are generated with ore or retrogenned, so
+ * {@code /bronzeage retrogen} never processes a chunk twice and resumes where
+ * it stopped after a restart. Thread-safe.
+ */
+final class RetrogenProgress {
+
+    // 32x32 chunks per region
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+    private static final int WORDS = (1 << (2 * REGION_SHIFT)) / 64;
+
+    // Region coordinates are offset to keep them non-negative in sort keys
+    private static final int KEY_REGION_BITS = 21;
+    private static final int KEY_REGION_OFFSET = 1 << (KEY_REGION_BITS - 1);
+    private static final long KEY_REGION_MASK = (1L << KEY_REGION_BITS) - 1;
+
+    private static final int MAGIC = 0x42415247; // "BARG"
+    private static final int VERSION = 1;
+
+    private final Map<Long, long[]> regions = new HashMap<>();
+    private int doneCount;
+
+    synchronized boolean isDone(int chunkX, int chunkZ) {
+        long[] bits = regions.get(regionKey(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT));
+        int bit = bitIndex(chunkX, chunkZ);
+        return bits != null && (bits[bit >>> 6] & (1L << bit)) != 0L;
+    }
+
+    synchronized void markDone(int chunkX, int chunkZ) {
+        long[] bits = regions.computeIfAbsent(regionKey(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT), k -> new long[WORDS]);
+        int bit = bitIndex(chunkX, chunkZ);
+        if ((bits[bit >>> 6] & (1L << bit)) == 0L) {
+            bits[bit >>> 6] |= 1L << bit;
+            doneCount++;
+        }
+    }
+
+    /**
+     * Unmarks a chunk whose ore was never applied, so retrogen picks it up.
+     */
+    synchronized void clearDone(int chunkX, int chunkZ) {
+        long[] bits = regions.get(regionKey(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT));
+        int bit = bitIndex(chunkX, chunkZ);
+        if (bits != null && (bits[bit >>> 6] & (1L << bit)) != 0L) {
+            bits[bit >>> 6] &= ~(1L << bit);
+            doneCount--;
+        }
+    }
+
+    /**
+     * @return number of chunks marked done
+     */
+    synchronized int doneCount() {
+        return doneCount;
+    }
+
+    private static long regionKey(int regionX, int regionZ) {
+        return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+    }
+
+    private static int bitIndex(int chunkX, int chunkZ) {
+        return ((chunkZ & REGION_MASK) << REGION_SHIFT) | (chunkX & REGION_MASK);
+    }
+
+    /**
+     * Sort key that orders chunks region by region, then row by row inside a
+     * region, so a run touches one region file at a time:
+     * <pre>
+     *   [ regionX:21 | regionZ:21 | localZ:5 | localX:5 ]
+     * </pre>
+     */
+    static long regionOrderKey(int chunkX, int chunkZ) {
+        long regionX = (chunkX >> REGION_SHIFT) + KEY_REGION_OFFSET;
+        long regionZ = (chunkZ >> REGION_SHIFT) + KEY_REGION_OFFSET;
+        return (regionX << (KEY_REGION_BITS + 2 * REGION_SHIFT))
+            | (regionZ << (2 * REGION_SHIFT))
+            | bitIndex(chunkX, chunkZ);
+    }
+
+    static int keyChunkX(long key) {
+        int regionX = (int) ((key >>> (KEY_REGION_BITS + 2 * REGION_SHIFT)) & KEY_REGION_MASK) - KEY_REGION_OFFSET;
+        return (regionX << REGION_SHIFT) | (int) (key & REGION_MASK);
+    }
+
+    static int keyChunkZ(long key) {
+        int regionZ = (int) ((key >>> (2 * REGION_SHIFT)) & KEY_REGION_MASK) - KEY_REGION_OFFSET;
+        return (regionZ << REGION_SHIFT) | (int) ((key >>> REGION_SHIFT) & REGION_MASK);
+    }
+
+    /**
+     * Writes the bitmaps to {@code file}, replacing it atomically.
+     */
+    synchronized void save(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(regions.size());
+            for (Map.Entry<Long, long[]> e : regions.entrySet()) {
+                out.writeLong(e.getKey());
+                for (long word : e.getValue()) {
+                    out.writeLong(word);
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the progress saved in {@code file}, or empty progress if it does not exist
+     */
+    static RetrogenProgress load(Path file) throws IOException {
+        RetrogenProgress progress = new RetrogenProgress();
+        if (!Files.exists(file)) {
+            return progress;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a retrogen progress file: " + file);
+            }
+            int regionCount = in.readInt();
+            for (int r = 0; r < regionCount; r++) {
+                long key = in.readLong();
+                long[] bits = new long[WORDS];
+                for (int w = 0; w < WORDS; w++) {
+                    bits[w] = in.readLong();
+                    progress.doneCount += Long.bitCount(bits[w]);
+                }
+                progress.regions.put(key, bits);
+            }
+        }
+        return progress;
+    }
+}
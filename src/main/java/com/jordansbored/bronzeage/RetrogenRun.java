@@ -0,0 +1,68 @@
+package com.jordansbored.bronzeage;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import com.hypixel.hytale.server.core.universe.world.World;
+
+/**
+ * Adds ore to chunks that existed before the plugin was installed.
+ *
+ * A {@link ChunkStream} that skips chunks the {@link RetrogenProgress} bitmap
+ * already marks as having ore, and marks each chunk once its plan is applied.
+ * Chunks that could not be loaded stay unmarked, so the next run picks them up.
+ *
+ * The bitmap only knows chunks generated since it was introduced, so a
+ * resident chunk is also skipped, and marked, if it already holds ore: chunks
+ * explored under older versions of the plugin got their ore from the post-pass
+ * without being recorded.
+ */
+final class RetrogenRun extends ChunkStream<ChunkOrePlan> {
+
+    /**
+     * Looks for ore in a chunk on the world thread.
+     */
+    interface OreCheck {
+        /**
+         * @return true if the chunk is in memory and already holds ore
+         */
+        boolean hasOre(int chunkX, int chunkZ);
+    }
+
+    private final RetrogenProgress progress;
+    private final OreCheck oreCheck;
+
+    /**
+     * @param chunks chunk region order keys from {@link RetrogenProgress#regionOrderKey}, sorted
+     * @param loader starts loading a chunk by index
+     * @param onFinished called on the world thread once the run completes or is cancelled
+     */
+    RetrogenRun(World world, ScheduledExecutorService ticker, String description, long[] chunks, RetrogenProgress progress,
+                OreCheck oreCheck, Executor workers, Planner<ChunkOrePlan> planner, LongFunction<CompletableFuture<?>> loader,
+                Applier<ChunkOrePlan> applier, Consumer<? super ChunkStream<ChunkOrePlan>> onFinished) {
+        super(world, ticker, description, chunks, workers, planner, loader, applier, onFinished);
+        this.progress = progress;
+        this.oreCheck = oreCheck;
+    }
+
+    @Override
+    boolean skip(int chunkX, int chunkZ) {
+        if (progress.isDone(chunkX, chunkZ)) {
+            return true;
+        }
+        // Checked again once the chunk is loaded, right before its plan would be applied
+        if (oreCheck.hasOre(chunkX, chunkZ)) {
+            progress.markDone(chunkX, chunkZ);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    void applied(int chunkX, int chunkZ) {
+        progress.markDone(chunkX, chunkZ);
+    }
+}
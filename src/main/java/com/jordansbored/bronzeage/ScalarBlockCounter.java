@@ -0,0 +1,34 @@
+package com.jordansbored.bronzeage;
+
+/**
+ * {@link BlockCounter} in plain Java, used when the Vector API is not
+ * available and for the tails the vector loop leaves over.
+ */
+final class ScalarBlockCounter implements BlockCounter {
+
+    @Override
+    public void count(int[] ids, int from, int to, int[] oreBlockIds, int[][] hostRocks, long[] counts) {
+        for (int ore = 0; ore < oreBlockIds.length; ore++) {
+            int oreId = oreBlockIds[ore];
+            int[] host = hostRocks[ore];
+            long ores = 0;
+            long hosts = 0;
+            for (int i = from; i < to; i++) {
+                int id = ids[i];
+                if (id == oreId) {
+                    ores++;
+                }
+                if (id >= 0 && id < host.length) {
+                    hosts += host[id];
+                }
+            }
+            counts[2 * ore] += ores;
+            counts[2 * ore + 1] += hosts;
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,174 @@
+package com.jordansbored.bronzeage;
+
+/**
+ * Which parts of a freshly generated chunk hold host rock, per ore, so veins
+ * centred in air, water or caves can be dropped before they are rasterized.
+ *
+ * The chunk is split into cells of 4x4x4 blocks. Vein centers only depend on
+ * the seed ({@link OrePlanner#predictVeins}), so only the cells around the
+ * chunk's own veins are read, and a vein stops reading as soon as one of its
+ * cells holds host rock for its ore: a vein in solid rock costs a few block
+ * reads, a vein in open space at most the cells of its box. Cells are shared
+ * between veins and ores. Built once on the thread that loads the chunk,
+ * immutable afterwards.
+ */
+final class SectionOccupancy {
+
+    /** Set {@code -Dbronzeage.occupancy=false} to plan every vein without a summary. */
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("bronzeage.occupancy", "true"));
+
+    private static final int CELL_SHIFT = 2;
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+    // Cells across a chunk in x and z, and up to the build limit
+    private static final int COLUMNS = 32 >> CELL_SHIFT;
+    private static final int LAYERS = (VeinRasterizer.MAX_BLOCK_Y >> CELL_SHIFT) + 1;
+    private static final int CELLS = COLUMNS * COLUMNS * LAYERS;
+    private static final int WORDS = (CELLS + 63) >> 6;
+
+    private final int chunkX;
+    private final int chunkZ;
+    // Bit per cell that was read in full or found host rock for every ore
+    private final long[] scanned = new long[WORDS];
+    // [ore * WORDS + word] -> bit per cell with host rock of the ore
+    private final long[] host;
+    private int blocksRead;
+
+    private SectionOccupancy(int chunkX, int chunkZ, int ores) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.host = new long[ores * WORDS];
+    }
+
+    /**
+     * Reads the cells around every vein the chunk will get.
+     * @param hostRocks host rock tables per ore for the chunk's biome, from {@link OreTables#hostRocks}
+     * @param planner predicts the chunk's veins; must belong to the calling thread
+     */
+    static SectionOccupancy summarize(ChunkBlockAccess chunk, int chunkX, int chunkZ, long worldSeed,
+                                      OreTables tables, boolean[][] hostRocks, OrePlanner planner) {
+        int ores = tables.ores.length;
+        SectionOccupancy occupancy = new SectionOccupancy(chunkX, chunkZ, ores);
+        int available = 0;
+        int maxVeins = 0;
+        for (int ore = 0; ore < ores; ore++) {
+            if (tables.available(ore)) {
+                available |= 1 << ore;
+                maxVeins = Math.max(maxVeins, tables.ores[ore].veinsPerChunk + 1);
+            }
+        }
+        int[] veins = new int[4 * maxVeins];
+        for (int ore = 0; ore < ores; ore++) {
+            if ((available & (1 << ore)) == 0) {
+                continue;
+            }
+            int count = planner.predictVeins(worldSeed, chunkX, chunkZ, tables.ores[ore], veins);
+            for (int v = 0; v < count; v++) {
+                occupancy.readAround(chunk, ore, veins[v * 4], veins[v * 4 + 1], veins[v * 4 + 2], hostRocks, available);
+            }
+        }
+        return occupancy;
+    }
+
+    /**
+     * Reads the cells of a vein's box until one holds host rock of its ore.
+     */
+    private void readAround(ChunkBlockAccess chunk, int ore, int x, int y, int z, boolean[][] hostRocks, int available) {
+        if (!insideChunk(x, z)) {
+            return;
+        }
+        int minX = (x - VeinRasterizer.EXTENT) & 31;
+        int minZ = (z - VeinRasterizer.EXTENT) & 31;
+        int minY = Math.max(VeinRasterizer.MIN_BLOCK_Y, y - VeinRasterizer.EXTENT);
+        int maxY = Math.min(VeinRasterizer.MAX_BLOCK_Y, y + VeinRasterizer.EXTENT);
+        for (int layer = minY >> CELL_SHIFT; layer <= maxY >> CELL_SHIFT; layer++) {
+            for (int cz = minZ >> CELL_SHIFT; cz <= (minZ + 2 * VeinRasterizer.EXTENT) >> CELL_SHIFT; cz++) {
+                for (int cx = minX >> CELL_SHIFT; cx <= (minX + 2 * VeinRasterizer.EXTENT) >> CELL_SHIFT; cx++) {
+                    int cell = (layer * COLUMNS + cz) * COLUMNS + cx;
+                    if (!isSet(scanned, 0, cell)) {
+                        readCell(chunk, cell, hostRocks, available);
+                    }
+                    if (isSet(host, ore * WORDS, cell)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one cell until it has found host rock for every available ore, or to its end.
+     */
+    private void readCell(ChunkBlockAccess chunk, int cell, boolean[][] hostRocks, int available) {
+        int x0 = (chunkX << 5) + (cell % COLUMNS << CELL_SHIFT);
+        int z0 = (chunkZ << 5) + (cell / COLUMNS % COLUMNS << CELL_SHIFT);
+        int layer = cell / (COLUMNS * COLUMNS);
+        int y0 = Math.max(VeinRasterizer.MIN_BLOCK_Y, layer << CELL_SHIFT);
+        int y1 = Math.min(VeinRasterizer.MAX_BLOCK_Y, (layer << CELL_SHIFT) + CELL_SIZE - 1);
+        int wanted = available;
+        read:
+        for (int y = y0; y <= y1; y++) {
+            for (int z = z0; z < z0 + CELL_SIZE; z++) {
+                for (int x = x0; x < x0 + CELL_SIZE; x++) {
+                    int blockId = chunk.getBlock(x, y, z);
+                    blocksRead++;
+                    for (int left = wanted; left != 0; left &= left - 1) {
+                        int ore = Integer.numberOfTrailingZeros(left);
+                        if (HostRockTable.isReplaceable(hostRocks[ore], blockId)) {
+                            host[ore * WORDS + (cell >> 6)] |= 1L << cell;
+                            wanted &= ~(1 << ore);
+                        }
+                    }
+                    if (wanted == 0) {
+                        break read;
+                    }
+                }
+            }
+        }
+        scanned[cell >> 6] |= 1L << cell;
+    }
+
+    /**
+     * @return false if the box a vein can cover around {@code (x, y, z)} lies
+     *         in this chunk and was read to hold no host rock of the ore, so
+     *         the vein would place nothing
+     */
+    boolean mayHost(int ore, int x, int y, int z) {
+        if (!insideChunk(x, z)) {
+            return true; // spills into a neighbour we know nothing about
+        }
+        int minX = (x - VeinRasterizer.EXTENT) & 31;
+        int minZ = (z - VeinRasterizer.EXTENT) & 31;
+        int minY = Math.max(VeinRasterizer.MIN_BLOCK_Y, y - VeinRasterizer.EXTENT);
+        int maxY = Math.min(VeinRasterizer.MAX_BLOCK_Y, y + VeinRasterizer.EXTENT);
+        for (int layer = minY >> CELL_SHIFT; layer <= maxY >> CELL_SHIFT; layer++) {
+            for (int cz = minZ >> CELL_SHIFT; cz <= (minZ + 2 * VeinRasterizer.EXTENT) >> CELL_SHIFT; cz++) {
+                for (int cx = minX >> CELL_SHIFT; cx <= (minX + 2 * VeinRasterizer.EXTENT) >> CELL_SHIFT; cx++) {
+                    int cell = (layer * COLUMNS + cz) * COLUMNS + cx;
+                    if (!isSet(scanned, 0, cell) || isSet(host, ore * WORDS, cell)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the box a vein can cover around {@code (x, z)} stays inside this chunk
+     */
+    private boolean insideChunk(int x, int z) {
+        return (x - VeinRasterizer.EXTENT) >> 5 == chunkX && (x + VeinRasterizer.EXTENT) >> 5 == chunkX
+            && (z - VeinRasterizer.EXTENT) >> 5 == chunkZ && (z + VeinRasterizer.EXTENT) >> 5 == chunkZ;
+    }
+
+    private static boolean isSet(long[] bits, int offset, int cell) {
+        return (bits[offset + (cell >> 6)] & (1L << cell)) != 0L;
+    }
+
+    /**
+     * @return blocks read to build the summary
+     */
+    int blocksRead() {
+        return blocksRead;
+    }
+}
@@ -0,0 +1,175 @@
+package com.jordansbored.bronzeage;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.hypixel.hytale.math.util.ChunkUtil;
+
+/**
+ * Predicts where ore veins are in a world from its seed, without loading
+ * chunks or reading blocks.
+ *
+ * Vein centers and sizes only depend on the world seed and chunk coordinates
+ * (see {@link OrePlanner#predictVeins}), so predicting a chunk costs a few
+ * random draws per vein. Predictions are cached per chunk in a bounded LRU
+ * keyed by chunk index. The cache is also the spatial index: chunks are
+ * 32x32-block grid cells, and nearest-vein queries walk rings of cells outward
+ * from the player, stopping once no cell further out can hold a closer vein.
+ * The cache is cleared when queries come in with different ore definitions,
+ * e.g. after {@code /bronzeage reload}. Thread-safe.
+ */
+final class VeinLocator {
+
+    // ~14 veins per chunk, one int each: about 3 MiB of predictions at most
+    static final int MAX_CACHED_CHUNKS = 1 << 15;
+
+    // Cached veins: [ ore:8 | size:4 | y:9 | localZ:5 | localX:5 ]
+    private static final int SIZE_SHIFT = 19;
+    private static final int ORE_SHIFT = 23;
+
+    /** The closest predicted vein. */
+    static final class Result {
+        final int x;
+        final int y;
+        final int z;
+        final int size;
+        final double distance;
+        final int chunksScanned;
+
+        Result(int x, int y, int z, int size, double distance, int chunksScanned) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.size = size;
+            this.distance = distance;
+            this.chunksScanned = chunksScanned;
+        }
+    }
+
+    private final long worldSeed;
+    private final OrePlanner planner = new OrePlanner();
+    // Definitions the cached predictions were made with
+    private List<OreDefinition> ores = List.of();
+    private int[] predicted;
+    private int[] chunkVeins;
+    private final Map<Long, int[]> cache = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+            return size() > MAX_CACHED_CHUNKS;
+        }
+    };
+    private long hits;
+    private long misses;
+
+    VeinLocator(long worldSeed) {
+        this.worldSeed = worldSeed;
+    }
+
+    private void use(List<OreDefinition> ores) {
+        if (ores.equals(this.ores)) {
+            return;
+        }
+        this.ores = ores;
+        cache.clear();
+        int maxVeins = 0;
+        int totalVeins = 0;
+        for (OreDefinition ore : ores) {
+            maxVeins = Math.max(maxVeins, ore.veinsPerChunk + 1);
+            totalVeins += ore.veinsPerChunk + 1;
+        }
+        this.predicted = new int[4 * maxVeins];
+        this.chunkVeins = new int[totalVeins];
+    }
+
+    /**
+     * Finds the predicted vein of {@code ore} closest to a position.
+     * @param ores the ore definitions in use
+     * @param ore index of the ore in {@code ores}
+     * @param radiusChunks how many rings of chunks around the position to search at most
+     * @return the closest vein, or null if there is none within the radius
+     */
+    synchronized Result nearest(List<OreDefinition> ores, int ore, int x, int y, int z, int radiusChunks) {
+        use(ores);
+        int centerX = x >> 5;
+        int centerZ = z >> 5;
+        long bestDist2 = Long.MAX_VALUE;
+        int best = 0;
+        int bestChunkX = 0;
+        int bestChunkZ = 0;
+        int scanned = 0;
+
+        for (int ring = 0; ring <= radiusChunks; ring++) {
+            // Every block of a chunk on this ring is at least this far away horizontally
+            long minDist = Math.max(0, (ring - 1) * 32L);
+            if (minDist * minDist >= bestDist2) {
+                break;
+            }
+            for (int dx = -ring; dx <= ring; dx++) {
+                // Rows at the top and bottom of the ring, only the two edge cells in between
+                int step = (dx == -ring || dx == ring) ? 1 : Math.max(1, 2 * ring);
+                for (int dz = -ring; dz <= ring; dz += step) {
+                    int chunkX = centerX + dx;
+                    int chunkZ = centerZ + dz;
+                    int[] veins = veinsOf(chunkX, chunkZ);
+                    scanned++;
+                    for (int vein : veins) {
+                        if (vein >>> ORE_SHIFT != ore) {
+                            continue;
+                        }
+                        long ddx = (chunkX << 5) + ChunkOrePlan.localX(vein) - x;
+                        long ddy = (vein >>> 10 & 0x1FF) - y;
+                        long ddz = (chunkZ << 5) + ChunkOrePlan.localZ(vein) - z;
+                        long dist2 = ddx * ddx + ddy * ddy + ddz * ddz;
+                        if (dist2 < bestDist2) {
+                            bestDist2 = dist2;
+                            best = vein;
+                            bestChunkX = chunkX;
+                            bestChunkZ = chunkZ;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (bestDist2 == Long.MAX_VALUE) {
+            return null;
+        }
+        return new Result((bestChunkX << 5) + ChunkOrePlan.localX(best), best >>> 10 & 0x1FF,
+            (bestChunkZ << 5) + ChunkOrePlan.localZ(best), best >>> SIZE_SHIFT & 0xF,
+            Math.sqrt(bestDist2), scanned);
+    }
+
+    /**
+     * @return the predicted veins of every ore in a chunk, from the cache if present
+     */
+    private int[] veinsOf(int chunkX, int chunkZ) {
+        long key = ChunkUtil.indexChunk(chunkX, chunkZ);
+        int[] veins = cache.get(key);
+        if (veins != null) {
+            hits++;
+            return veins;
+        }
+        misses++;
+
+        int n = 0;
+        for (int ore = 0; ore < ores.size(); ore++) {
+            int found = planner.predictVeins(worldSeed, chunkX, chunkZ, ores.get(ore), predicted);
+            for (int v = 0; v < found; v++) {
+                int packed = ChunkOrePlan.pack(predicted[v * 4] & 31, predicted[v * 4 + 1], predicted[v * 4 + 2] & 31);
+                chunkVeins[n++] = (ore << ORE_SHIFT) | (predicted[v * 4 + 3] << SIZE_SHIFT) | packed;
+            }
+        }
+        veins = Arrays.copyOf(chunkVeins, n);
+        cache.put(key, veins);
+        return veins;
+    }
+
+    /**
+     * @return "hits/lookups" of the prediction cache
+     */
+    synchronized String cacheStats() {
+        return hits + "/" + (hits + misses) + " cache hits, " + cache.size() + " chunks cached";
+    }
+}
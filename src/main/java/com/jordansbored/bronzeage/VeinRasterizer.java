@@ -0,0 +1,178 @@
+package com.jordansbored.bronzeage;
+
+/**
+ * Rasterizes a blob-shaped ore vein into a small deduplicated bitmask.
+ *
+ * A vein is a chain of overlapping sub-spheres whose centers stay within one
+ * block of the vein center and whose radius is at most 2.5, so every vein fits
+ * in a 7x7x7 box around its center. The box is stored as eight longs: one word
+ * per x column, one bit per (y, z) pair. Instead of testing {@code dist2 <= r2}
+ * per block, each sub-sphere ORs a cached stencil into the mask. The stencil
+ * only depends on the cluster radius, the jitter bucket ({@code floor(r2)})
+ * and the sub-sphere offset, so all of them are precomputed once.
+ *
+ * The RNG is consumed exactly like the original per-block loops, so the set
+ * of blocks in the mask is the same set those loops visited, with overlaps
+ * collapsed. Instances are reusable but not thread-safe.
+ */
+final class VeinRasterizer {
+
+    // Lowest and highest Y an ore block may be placed at
+    static final int MIN_BLOCK_Y = 1;
+    static final int MAX_BLOCK_Y = 310;
+
+    static final int MAX_CLUSTER_RADIUS = 2;
+    // Sub-sphere centers are offset by at most one block from the vein center
+    private static final int MAX_OFFSET = 1;
+    // Distance from the vein center to the edge of the box
+    static final int EXTENT = MAX_OFFSET + MAX_CLUSTER_RADIUS;
+    private static final int OFFSETS = 2 * MAX_OFFSET + 1;
+    private static final int MAX_THRESHOLD = 12;
+    private static final int WORDS = 8;
+
+    // STENCILS[radius][floor(r2)][offset index] -> 8-word mask, null for unreachable buckets
+    private static final long[][][][] STENCILS = buildStencils();
+
+    private final long[] mask = new long[WORDS];
+    private int originX;
+    private int originY;
+    private int originZ;
+
+    /**
+     * Rasterizes one vein, replacing the previous mask.
+     */
+    void rasterize(int centerX, int centerY, int centerZ, int size, OreRandom rand) {
+        for (int w = 0; w < WORDS; w++) {
+            mask[w] = 0L;
+        }
+        originX = centerX - EXTENT;
+        originY = centerY - EXTENT;
+        originZ = centerZ - EXTENT;
+
+        // Generate a blob-like vein using multiple overlapping spheres
+        for (int i = 0; i < size; i++) {
+            float progress = (float) i / size;
+            // Replace expensive trig calls with simple randomized offsets.
+            int offsetX = (int) ((rand.nextDouble() * 2.0 - 1.0) * progress * 2);
+            int offsetY = (int) ((rand.nextDouble() * 2.0 - 1.0) * progress * 2);
+            int offsetZ = (int) ((rand.nextDouble() * 2.0 - 1.0) * progress * 2);
+
+            int clusterRadius = 1 + rand.nextInt(2);
+            double r = clusterRadius + rand.nextFloat() * 0.5;
+            // Integer distances pass dist2 <= r2 exactly when dist2 <= floor(r2)
+            int threshold = (int) (r * r);
+
+            long[] stencil = STENCILS[clusterRadius][threshold][offsetIndex(offsetX, offsetY, offsetZ)];
+            for (int w = 0; w < WORDS; w++) {
+                mask[w] |= stencil[w];
+            }
+        }
+    }
+
+    /**
+     * Drops every block outside the given inclusive block bounds.
+     * @return number of blocks left in the mask
+     */
+    int clip(int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+        long yzMask = planeMask(minY - originY, maxY - originY, minZ - originZ, maxZ - originZ);
+        int loX = minX - originX;
+        int hiX = maxX - originX;
+        int count = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long bits = (w >= loX && w <= hiX) ? mask[w] & yzMask : 0L;
+            mask[w] = bits;
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    /**
+     * Drops blocks above or below the placeable Y range.
+     * @return number of blocks left in the mask
+     */
+    int clipY() {
+        return clip(Integer.MIN_VALUE / 2, Integer.MAX_VALUE / 2, MIN_BLOCK_Y, MAX_BLOCK_Y, Integer.MIN_VALUE / 2, Integer.MAX_VALUE / 2);
+    }
+
+    /** @return the set bits of x column {@code word} */
+    long word(int word) {
+        return mask[word];
+    }
+
+    static int words() {
+        return WORDS;
+    }
+
+    int blockX(int word) {
+        return originX + word;
+    }
+
+    int blockY(int bit) {
+        return originY + (bit >>> 3);
+    }
+
+    int blockZ(int bit) {
+        return originZ + (bit & 7);
+    }
+
+    /**
+     * @return a (y, z) plane mask with every bit inside the local ranges set
+     */
+    private static long planeMask(int loY, int hiY, int loZ, int hiZ) {
+        loY = Math.max(loY, 0);
+        hiY = Math.min(hiY, 7);
+        loZ = Math.max(loZ, 0);
+        hiZ = Math.min(hiZ, 7);
+        if (loY > hiY || loZ > hiZ) {
+            return 0L;
+        }
+        long row = ((1L << (hiZ - loZ + 1)) - 1) << loZ;
+        long plane = 0L;
+        for (int y = loY; y <= hiY; y++) {
+            plane |= row << (y << 3);
+        }
+        return plane;
+    }
+
+    private static int offsetIndex(int offsetX, int offsetY, int offsetZ) {
+        return ((offsetX + MAX_OFFSET) * OFFSETS + (offsetY + MAX_OFFSET)) * OFFSETS + (offsetZ + MAX_OFFSET);
+    }
+
+    private static long[][][][] buildStencils() {
+        long[][][][] stencils = new long[MAX_CLUSTER_RADIUS + 1][MAX_THRESHOLD + 1][][];
+        for (int radius = 1; radius <= MAX_CLUSTER_RADIUS; radius++) {
+            // r ranges over [radius, radius + 0.5), so floor(r2) can only take these values
+            int minThreshold = radius * radius;
+            int maxThreshold = (int) ((radius + 0.5) * (radius + 0.5));
+            for (int threshold = minThreshold; threshold <= maxThreshold; threshold++) {
+                long[][] byOffset = new long[OFFSETS * OFFSETS * OFFSETS][];
+                for (int ox = -MAX_OFFSET; ox <= MAX_OFFSET; ox++) {
+                    for (int oy = -MAX_OFFSET; oy <= MAX_OFFSET; oy++) {
+                        for (int oz = -MAX_OFFSET; oz <= MAX_OFFSET; oz++) {
+                            byOffset[offsetIndex(ox, oy, oz)] = sphere(radius, threshold, ox, oy, oz);
+                        }
+                    }
+                }
+                stencils[radius][threshold] = byOffset;
+            }
+        }
+        return stencils;
+    }
+
+    private static long[] sphere(int radius, int threshold, int ox, int oy, int oz) {
+        long[] words = new long[WORDS];
+        for (int dx = -radius; dx <= radius; dx++) {
+            for (int dy = -radius; dy <= radius; dy++) {
+                for (int dz = -radius; dz <= radius; dz++) {
+                    if (dx*dx + dy*dy + dz*dz <= threshold) {
+                        int lx = EXTENT + ox + dx;
+                        int ly = EXTENT + oy + dy;
+                        int lz = EXTENT + oz + dz;
+                        words[lx] |= 1L << ((ly << 3) | lz);
+                    }
+                }
+            }
+        }
+        return words;
+    }
+}
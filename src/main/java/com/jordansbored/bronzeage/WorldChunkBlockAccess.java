@@ -0,0 +1,47 @@
+package com.jordansbored.bronzeage;
+
+import com.hypixel.hytale.server.core.asset.type.blocktype.config.BlockType;
+import com.hypixel.hytale.server.core.universe.world.chunk.WorldChunk;
+
+/**
+ * {@link ChunkBlockAccess} backed by a live {@link WorldChunk}.
+ *
+ * Instances are re-pointed at a new chunk with {@link #wrap} so the world
+ * thread can reuse one per tick instead of allocating per chunk.
+ */
+final class WorldChunkBlockAccess implements ChunkBlockAccess {
+
+    // setBlock settings: 4 = no particles, helps with performance during generation
+    private static final int SETTINGS_NO_PARTICLES = 4;
+
+    private WorldChunk chunk;
+    private int cachedId = Integer.MIN_VALUE;
+    private BlockType cachedType;
+
+    WorldChunkBlockAccess wrap(WorldChunk chunk) {
+        this.chunk = chunk;
+        // Re-resolve types per chunk in case the asset map was reloaded
+        this.cachedId = Integer.MIN_VALUE;
+        return this;
+    }
+
+    @Override
+    public int getBlock(int x, int y, int z) {
+        return chunk.getBlock(x, y, z);
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, int blockId) {
+        // setBlock: x, y, z, blockId, blockType, rotation, filler, settings
+        chunk.setBlock(x, y, z, blockId, typeOf(blockId), 0, 0, SETTINGS_NO_PARTICLES);
+    }
+
+    private BlockType typeOf(int blockId) {
+        // Generation writes long runs of the same ore, so one cached entry is enough
+        if (blockId != cachedId) {
+            cachedType = BlockType.getAssetMap().getAsset(blockId);
+            cachedId = blockId;
+        }
+        return cachedType;
+    }
+}
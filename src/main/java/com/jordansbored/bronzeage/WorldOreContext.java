@@ -0,0 +1,127 @@
+package com.jordansbored.bronzeage;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.universe.world.World;
+
+/**
+ * Everything ore generation keeps for one world: its seed, queues, stores
+ * and counters.
+ *
+ * Each world thread only touches its own context, so worlds generate ore
+ * concurrently without sharing mutable state; the one thing they share, the
+ * compiled {@link OreTables}, is immutable. Contexts are created on first use
+ * of a world and dropped when the world is removed.
+ */
+final class WorldOreContext {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+    // Journals kept for /bronzeage undo; older ones are dropped
+    static final int MAX_JOURNALS = 16;
+
+    final World world;
+    // Seed all natural generation in this world derives from
+    final long worldSeed;
+    final GenerationMetrics metrics;
+    // Blocks of veins crossing a chunk edge, waiting for the neighbouring chunk
+    final PendingPlacements pending;
+    // Chunks that already have ore
+    final RetrogenProgress retrogen;
+    final ChunkApplyQueue applyQueue;
+    // Budgeted, cancellable command jobs
+    final GenerationJobScheduler jobs;
+    // Seed-predicted vein positions, for /bronzeage locate
+    final VeinLocator locator;
+    // Running chunk streams: retrogen and command generation
+    final List<ChunkStream<?>> streams = new CopyOnWriteArrayList<>();
+    // Running surveys, listed and cancelled like the jobs
+    final List<OreSurvey> surveys = new CopyOnWriteArrayList<>();
+    // The running retrogen, at most one per world
+    final AtomicReference<ChunkStream<?>> retrogenRun = new AtomicReference<>();
+    // Placement journals of finished command jobs by job id, for /bronzeage undo
+    final ConcurrentSkipListMap<Integer, PlacementJournal> journals = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param applier creates the applier of the context's apply queue
+     */
+    WorldOreContext(World world, PendingPlacements pending, RetrogenProgress retrogen, ScheduledExecutorService ticker,
+                    Function<WorldOreContext, ChunkApplyQueue.Applier> applier) {
+        this.world = world;
+        this.worldSeed = world.getWorldConfig().getSeed();
+        this.pending = pending;
+        this.retrogen = retrogen;
+        this.metrics = new GenerationMetrics(this::queueDepth, this::drainRate, pending::size);
+        this.applyQueue = new ChunkApplyQueue(world, ticker, metrics, applier.apply(this));
+        this.jobs = new GenerationJobScheduler(world, ticker, GenerationJobScheduler.DEFAULT_BUDGET_NANOS);
+        this.locator = new VeinLocator(worldSeed);
+    }
+
+    private long queueDepth() {
+        return applyQueue.depth();
+    }
+
+    private double drainRate() {
+        return applyQueue.drainRate();
+    }
+
+    /**
+     * Cancels the world's command jobs, chunk streams and surveys.
+     */
+    void cancelAll() {
+        for (GenerationJob job : jobs.jobs()) {
+            jobs.cancel(job.id);
+        }
+        for (ChunkStream<?> stream : streams) {
+            stream.cancel();
+        }
+        for (OreSurvey survey : surveys) {
+            survey.cancel();
+        }
+    }
+
+    /**
+     * Seals a finished job's journal and keeps it for undo, dropping the
+     * oldest journals beyond {@link #MAX_JOURNALS}. Empty journals are closed
+     * right away. World thread.
+     */
+    void keepJournal(int jobId, PlacementJournal journal) {
+        journal.seal();
+        if (journal.entries() == 0 && journal.deferredEntries() == 0) {
+            closeJournal(journal);
+            return;
+        }
+        journals.put(jobId, journal);
+        while (journals.size() > MAX_JOURNALS) {
+            Map.Entry<Integer, PlacementJournal> oldest = journals.pollFirstEntry();
+            if (oldest != null) {
+                closeJournal(oldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * Closes and deletes every kept journal.
+     */
+    void closeJournals() {
+        Map.Entry<Integer, PlacementJournal> entry;
+        while ((entry = journals.pollFirstEntry()) != null) {
+            closeJournal(entry.getValue());
+        }
+    }
+
+    static void closeJournal(PlacementJournal journal) {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOGGER.atWarning().log("Could not delete placement journal: %s", e.getMessage());
+        }
+    }
+}
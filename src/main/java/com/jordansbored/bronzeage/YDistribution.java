@@ -0,0 +1,83 @@
+package com.jordansbored.bronzeage;
+
+/**
+ * Vein center heights skewed towards the bottom of an ore's Y range, as a
+ * precomputed table.
+ *
+ * {@link #sample} returns exactly {@code minY + (int) (Math.pow(u, bias) * (maxY - minY))}
+ * without calling {@code Math.pow}: the smallest {@code u} that reaches each
+ * height is found once, bit for bit, and a guide table indexed by the top bits
+ * of {@code u} jumps to the right height, which is then usually off by at most
+ * one step. Worlds keep generating the same veins as with the formula.
+ * Immutable.
+ */
+final class YDistribution {
+
+    private static final int GUIDE_BITS = 8;
+    private static final int GUIDE_SIZE = 1 << GUIDE_BITS;
+
+    final int minY;
+    final int maxY;
+    final double bias;
+    // thresholds[k] is the smallest u giving offset k or more; 2.0 if none does
+    private final double[] thresholds;
+    // guide[i] is the offset for u = i / GUIDE_SIZE
+    private final int[] guide;
+
+    YDistribution(int minY, int maxY, double bias) {
+        this.minY = minY;
+        this.maxY = maxY;
+        this.bias = bias;
+        int range = maxY - minY;
+        thresholds = new double[range + 2];
+        for (int k = 1; k <= range; k++) {
+            thresholds[k] = smallestReaching(k, range, bias);
+        }
+        thresholds[range + 1] = 2.0;
+        guide = new int[GUIDE_SIZE];
+        int k = 0;
+        for (int i = 0; i < GUIDE_SIZE; i++) {
+            double u = (double) i / GUIDE_SIZE;
+            while (u >= thresholds[k + 1]) {
+                k++;
+            }
+            guide[i] = k;
+        }
+    }
+
+    /**
+     * @param u a uniform value in [0, 1)
+     * @return the vein center Y
+     */
+    int sample(double u) {
+        int k = guide[(int) (u * GUIDE_SIZE)];
+        while (u >= thresholds[k + 1]) {
+            k++;
+        }
+        return minY + k;
+    }
+
+    private static int offset(double u, int range, double bias) {
+        return (int) (Math.pow(u, bias) * range);
+    }
+
+    /**
+     * Binary search over the bit patterns of [0, 1), which sort like the
+     * doubles they encode. {@code Math.pow} is semi-monotonic, so the offset
+     * never decreases as {@code u} grows.
+     * @return the smallest u in [0, 1) whose offset is at least {@code k}, or 2.0 if there is none
+     */
+    private static double smallestReaching(int k, int range, double bias) {
+        long lo = 0L;
+        long hi = Double.doubleToRawLongBits(1.0);
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (offset(Double.longBitsToDouble(mid), range, bias) >= k) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo == Double.doubleToRawLongBits(1.0) ? 2.0 : Double.longBitsToDouble(lo);
+    }
+}
@@ -0,0 +1,57 @@
+package com.jordansbored.bronzeage;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link BlockCounter} on the JDK Vector API: ore blocks are counted with a
+ * lane-wise compare, host rocks with a gather from the 0/1 host table summed
+ * in vector lanes. Only loaded through {@link BlockCounter#create()}, so the
+ * plugin still runs when the incubator module is missing. Lives in its own
+ * source set so only its compile needs the module.
+ */
+final class VectorBlockCounter implements BlockCounter {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final ScalarBlockCounter TAIL = new ScalarBlockCounter();
+
+    @Override
+    public void count(int[] ids, int from, int to, int[] oreBlockIds, int[][] hostRocks, long[] counts) {
+        int lanes = SPECIES.length();
+        int upper = from + SPECIES.loopBound(to - from);
+        for (int ore = 0; ore < oreBlockIds.length; ore++) {
+            int[] host = hostRocks[ore];
+            IntVector oreId = IntVector.broadcast(SPECIES, oreBlockIds[ore]);
+            IntVector hostSum = IntVector.zero(SPECIES);
+            long ores = 0;
+            long slowHosts = 0;
+            for (int i = from; i < upper; i += lanes) {
+                IntVector v = IntVector.fromArray(SPECIES, ids, i);
+                ores += v.eq(oreId).trueCount();
+                // The gather reads host[id] straight from the id array, so every id must be in the table
+                if (v.compare(VectorOperators.UNSIGNED_GE, host.length).anyTrue()) {
+                    for (int lane = i; lane < i + lanes; lane++) {
+                        int id = ids[lane];
+                        if (id >= 0 && id < host.length) {
+                            slowHosts += host[id];
+                        }
+                    }
+                    continue;
+                }
+                hostSum = hostSum.add(IntVector.fromArray(SPECIES, host, 0, ids, i));
+            }
+            // Each lane adds at most 1 per id, so lane sums cannot overflow
+            counts[2 * ore] += ores;
+            counts[2 * ore + 1] += hostSum.reduceLanes(VectorOperators.ADD) + slowHosts;
+        }
+        if (upper < to) {
+            TAIL.count(ids, upper, to, oreBlockIds, hostRocks, counts);
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "vector, " + SPECIES.length() + " lanes";
+    }
+}